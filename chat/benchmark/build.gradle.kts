@@ -0,0 +1,17 @@
+plugins {
+    java
+    application
+}
+
+group = "labs.network.benchmark"
+version = "1.0.0"
+
+application {
+    mainClass.set("org.openjdk.jmh.Main")
+}
+
+dependencies {
+    implementation(project(":protocol"))
+    implementation("org.openjdk.jmh:jmh-core:1.37")
+    annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
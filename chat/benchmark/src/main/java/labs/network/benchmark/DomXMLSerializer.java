@@ -0,0 +1,425 @@
+package labs.network.benchmark;
+
+import labs.network.protocol.Message;
+import labs.network.protocol.SerializationException;
+import labs.network.protocol.Serializer;
+import labs.network.protocol.UserInfo;
+import labs.network.protocol.XMLUtils;
+import labs.network.protocol.c2s.*;
+import labs.network.protocol.s2c.*;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The original DOM-based XML codec, kept only as a baseline for the XML benchmarks.
+ * Its output is expected to match {@link labs.network.protocol.XMLSerializer} byte for byte.
+ */
+public class DomXMLSerializer implements Serializer {
+    @Override
+    public byte[] serialize(Message message) {
+        try {
+            Document document = newDocument();
+            Element root = toElement(document, message);
+            if (message.getRequestId() != 0) {
+                root.setAttribute(Message.REQUEST_ID_ATTRIBUTE, Long.toString(message.getRequestId()));
+            }
+            document.appendChild(root);
+            return toBytes(document);
+        } catch (SerializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializationException("Failed to serialize XML message", e);
+        }
+    }
+
+    @Override
+    public Message deserialize(byte[] data) {
+        try {
+            DocumentBuilder builder = newDocumentBuilder();
+            Document document = builder.parse(new ByteArrayInputStream(data));
+            Element root = document.getDocumentElement();
+            if (root == null) {
+                throw new SerializationException("XML document has no root element");
+            }
+            Message message = fromElement(root);
+            message.setRequestId(XMLUtils.parseRequestId(root.getAttribute(Message.REQUEST_ID_ATTRIBUTE)));
+            return message;
+        } catch (SerializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializationException("Failed to deserialize XML message", e);
+        }
+    }
+
+    private Element toElement(Document document, Message message) {
+        return switch (message) {
+            case ConnectC2S m -> {
+                Element command = command(document, "login");
+                appendTextElement(document, command, "name", m.getName());
+                appendTextElement(document, command, "type", m.getClientType());
+                appendTextElement(document, command, "password", m.getPassword());
+                if (!m.getCompression().isEmpty()) {
+                    appendTextElement(document, command, "compression", m.getCompression());
+                }
+                yield command;
+            }
+            case ListUsersC2S m -> {
+                Element command = command(document, "list");
+                appendTextElement(document, command, "session", m.getSession());
+                if (m.getSince() >= 0) {
+                    appendTextElement(document, command, "since", Long.toString(m.getSince()));
+                }
+                if (m.getAfter() != null) {
+                    appendTextElement(document, command, "after", m.getAfter());
+                }
+                if (m.getLimit() > 0) {
+                    appendTextElement(document, command, "limit", Integer.toString(m.getLimit()));
+                }
+                yield command;
+            }
+            case ChatMessageC2S m -> {
+                Element command = command(document, "message");
+                appendTextElement(document, command, "message", m.getMessage());
+                appendTextElement(document, command, "session", m.getSession());
+                yield command;
+            }
+            case LogoutC2S m -> {
+                Element command = command(document, "logout");
+                appendTextElement(document, command, "session", m.getSession());
+                yield command;
+            }
+            case ResumeC2S m -> {
+                Element command = command(document, "resume");
+                appendTextElement(document, command, "session", m.getSession());
+                appendTextElement(document, command, "lastmessage", Integer.toString(m.getLastMessage()));
+                if (!m.getCompression().isEmpty()) {
+                    appendTextElement(document, command, "compression", m.getCompression());
+                }
+                yield command;
+            }
+            case PingC2S m -> {
+                Element command = command(document, "ping");
+                appendTextElement(document, command, "time", Long.toString(m.getTimestamp()));
+                yield command;
+            }
+            case JoinRoomC2S m -> {
+                Element command = command(document, "join");
+                appendTextElement(document, command, "room", m.getRoom());
+                appendTextElement(document, command, "session", m.getSession());
+                yield command;
+            }
+            case LeaveRoomC2S m -> {
+                Element command = command(document, "leave");
+                appendTextElement(document, command, "room", m.getRoom());
+                appendTextElement(document, command, "session", m.getSession());
+                yield command;
+            }
+            case RoomMessageC2S m -> {
+                Element command = command(document, "roommessage");
+                appendTextElement(document, command, "room", m.getRoom());
+                appendTextElement(document, command, "message", m.getMessage());
+                appendTextElement(document, command, "session", m.getSession());
+                yield command;
+            }
+            case ErrorS2C m -> {
+                Element error = document.createElement("error");
+                appendTextElement(document, error, "message", m.getMessage());
+                yield error;
+            }
+            case ListUsersS2C m -> {
+                Element success = document.createElement("success");
+                Element listUsers = document.createElement("listusers");
+                if (m.getVersion() >= 0) {
+                    listUsers.setAttribute("version", Long.toString(m.getVersion()));
+                }
+                if (m.getNext() != null) {
+                    listUsers.setAttribute("next", m.getNext());
+                }
+                if (m.isDelta()) {
+                    listUsers.setAttribute("delta", "true");
+                }
+                for (UserInfo user : m.getUsers()) {
+                    Element userElement = document.createElement("user");
+                    appendTextElement(document, userElement, "name", user.name());
+                    appendTextElement(document, userElement, "type", user.clientType());
+                    listUsers.appendChild(userElement);
+                }
+                for (String name : m.getRemoved()) {
+                    appendTextElement(document, listUsers, "removed", name);
+                }
+                success.appendChild(listUsers);
+                yield success;
+            }
+            case LoginResposeS2C m -> {
+                Element success = document.createElement("success");
+                appendTextElement(document, success, "session", m.getSession());
+                if (m.getHeartbeatSeconds() > 0) {
+                    appendTextElement(document, success, "heartbeat", Integer.toString(m.getHeartbeatSeconds()));
+                }
+                if (!m.getCompression().isEmpty()) {
+                    appendTextElement(document, success, "compression", m.getCompression());
+                }
+                yield success;
+            }
+            case RoomResponseS2C m -> {
+                Element success = response(document, m.isJoined() ? "join" : "leave");
+                appendTextElement(document, success, "room", m.getRoom());
+                yield success;
+            }
+            case LogoutResponseS2C m -> response(document, "logout");
+            case PongS2C m -> {
+                Element success = response(document, "pong");
+                appendTextElement(document, success, "time", Long.toString(m.getTimestamp()));
+                yield success;
+            }
+            case MessageResponseS2C m -> response(document, "message");
+            case EventMessageS2C m -> {
+                Element event = event(document, "message");
+                appendTextElement(document, event, "message", m.getMessage());
+                appendTextElement(document, event, "name", m.getFromName());
+                if (m.getIndex() >= 0) {
+                    appendTextElement(document, event, "index", Integer.toString(m.getIndex()));
+                }
+                yield event;
+            }
+            case UserLoginEventS2C m -> {
+                Element event = event(document, "userlogin");
+                appendTextElement(document, event, "name", m.getName());
+                appendTextElement(document, event, "type", m.getClientType());
+                yield event;
+            }
+            case UserLogoutEventS2C m -> {
+                Element event = event(document, "userlogout");
+                appendTextElement(document, event, "name", m.getName());
+                yield event;
+            }
+            case MissedMessagesS2C m -> {
+                Element event = event(document, "missed");
+                appendTextElement(document, event, "count", Integer.toString(m.getCount()));
+                yield event;
+            }
+            case RoomMessageEventS2C m -> {
+                Element event = event(document, "roommessage");
+                appendTextElement(document, event, "room", m.getRoom());
+                appendTextElement(document, event, "message", m.getMessage());
+                appendTextElement(document, event, "name", m.getFromName());
+                yield event;
+            }
+            case ReconnectEventS2C m -> {
+                Element event = event(document, "reconnect");
+                appendTextElement(document, event, "delay", Integer.toString(m.getDelayMillis()));
+                yield event;
+            }
+            default -> throw new SerializationException("Unsupported message type: " + message.getClass().getSimpleName());
+        };
+    }
+
+    private Message fromElement(Element root) {
+        String tag = root.getTagName();
+        if ("command".equals(tag)) {
+            return parseCommand(root, root.getAttribute("name"));
+        }
+        if ("error".equals(tag)) {
+            return new ErrorS2C(getContent(root, "message"));
+        }
+        if ("success".equals(tag)) {
+            Element listUsers = findChild(root, "listusers");
+            if (listUsers != null) {
+                return parseListUsers(listUsers);
+            }
+            if (findChild(root, "session") != null) {
+                return new LoginResposeS2C(
+                        getContent(root, "session"),
+                        (int) parseNumber(getOrDefault(root, "heartbeat", "0")),
+                        getOrDefault(root, "compression", "")
+                );
+            }
+
+            String response = root.getAttribute("response");
+            if ("join".equals(response) || "leave".equals(response)) {
+                return new RoomResponseS2C(getContent(root, "room"), "join".equals(response));
+            }
+            if ("logout".equals(response)) {
+                return new LogoutResponseS2C();
+            }
+            if ("pong".equals(response)) {
+                return new PongS2C(parseNumber(getOrDefault(root, "time", "0")));
+            }
+            if ("message".equals(response) || response.isEmpty()) {
+                return new MessageResponseS2C();
+            }
+
+            throw new SerializationException("Unsupported success response type: " + response);
+        }
+        if ("event".equals(tag)) {
+            return parseEvent(root, root.getAttribute("name"));
+        }
+        throw new SerializationException("Unsupported XML root tag: " + tag);
+    }
+
+    private Message parseCommand(Element command, String name) {
+        return switch (name) {
+            case "login" -> new ConnectC2S(
+                    getContent(command, "name"),
+                    getContent(command, "type"),
+                    getOrDefault(command, "password", ""),
+                    getOrDefault(command, "compression", "")
+            );
+            case "list" -> new ListUsersC2S(
+                    getContent(command, "session"),
+                    parseNumber(getOrDefault(command, "since", "-1")),
+                    getOrDefault(command, "after", null),
+                    (int) parseNumber(getOrDefault(command, "limit", "0"))
+            );
+            case "message" -> new ChatMessageC2S(getContent(command, "message"), getContent(command, "session"));
+            case "logout" -> new LogoutC2S(getContent(command, "session"));
+            case "resume" -> new ResumeC2S(
+                    getContent(command, "session"),
+                    (int) parseNumber(getOrDefault(command, "lastmessage", "-1")),
+                    getOrDefault(command, "compression", "")
+            );
+            case "ping" -> new PingC2S(parseNumber(getOrDefault(command, "time", "0")));
+            case "join" -> new JoinRoomC2S(getContent(command, "room"), getContent(command, "session"));
+            case "leave" -> new LeaveRoomC2S(getContent(command, "room"), getContent(command, "session"));
+            case "roommessage" -> new RoomMessageC2S(
+                    getContent(command, "room"),
+                    getContent(command, "message"),
+                    getContent(command, "session")
+            );
+            default -> throw new SerializationException("Unsupported command name: " + name);
+        };
+    }
+
+    private Message parseEvent(Element event, String name) {
+        return switch (name) {
+            case "message" -> new EventMessageS2C(
+                    getContent(event, "message"),
+                    getContent(event, "name"),
+                    (int) parseNumber(getOrDefault(event, "index", "-1"))
+            );
+            case "userlogin" -> new UserLoginEventS2C(getContent(event, "name"), getOrDefault(event, "type", "unknown"));
+            case "userlogout" -> new UserLogoutEventS2C(getContent(event, "name"));
+            case "missed" -> new MissedMessagesS2C((int) parseNumber(getContent(event, "count")));
+            case "roommessage" -> new RoomMessageEventS2C(
+                    getContent(event, "room"),
+                    getContent(event, "message"),
+                    getContent(event, "name")
+            );
+            case "reconnect" -> new ReconnectEventS2C((int) parseNumber(getContent(event, "delay")));
+            default -> throw new SerializationException("Unsupported event name: " + name);
+        };
+    }
+
+    private ListUsersS2C parseListUsers(Element listUsers) {
+        List<UserInfo> users = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        NodeList children = listUsers.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            if (!(children.item(i) instanceof Element element)) {
+                continue;
+            }
+            if ("user".equals(element.getTagName())) {
+                users.add(new UserInfo(getContent(element, "name"), getContent(element, "type")));
+            } else if ("removed".equals(element.getTagName())) {
+                removed.add(element.getTextContent());
+            }
+        }
+        String version = listUsers.getAttribute("version");
+        return new ListUsersS2C(users, removed, version.isEmpty() ? -1 : parseNumber(version),
+                listUsers.getAttribute("next"), "true".equals(listUsers.getAttribute("delta")));
+    }
+
+    private static Element command(Document document, String name) {
+        Element command = document.createElement("command");
+        command.setAttribute("name", name);
+        return command;
+    }
+
+    private static Element response(Document document, String response) {
+        Element success = document.createElement("success");
+        success.setAttribute("response", response);
+        return success;
+    }
+
+    private static Element event(Document document, String name) {
+        Element event = document.createElement("event");
+        event.setAttribute("name", name);
+        return event;
+    }
+
+    private static void appendTextElement(Document document, Element parent, String name, String value) {
+        Element element = document.createElement(name);
+        element.setTextContent(value);
+        parent.appendChild(element);
+    }
+
+    private static String getContent(Element parent, String childTag) {
+        Element child = findChild(parent, childTag);
+        if (child == null) {
+            throw new SerializationException("Missing element: " + childTag);
+        }
+        return child.getTextContent();
+    }
+
+    private static String getOrDefault(Element parent, String childTag, String def) {
+        Element child = findChild(parent, childTag);
+        return child != null ? child.getTextContent() : def;
+    }
+
+    private static Element findChild(Element parent, String tagName) {
+        NodeList children = parent.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node node = children.item(i);
+            if (node instanceof Element element && tagName.equals(element.getTagName())) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private static long parseNumber(String value) {
+        try {
+            return Long.parseLong(value.strip());
+        } catch (NumberFormatException e) {
+            throw new SerializationException("Invalid number: " + value, e);
+        }
+    }
+
+    private Document newDocument() throws Exception {
+        return newDocumentBuilder().newDocument();
+    }
+
+    private DocumentBuilder newDocumentBuilder() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setExpandEntityReferences(false);
+        return factory.newDocumentBuilder();
+    }
+
+    private byte[] toBytes(Document document) throws Exception {
+        TransformerFactory transformerFactory = TransformerFactory.newInstance();
+        transformerFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        Transformer transformer = transformerFactory.newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        transformer.setOutputProperty(OutputKeys.ENCODING, StandardCharsets.UTF_8.name());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(new DOMSource(document), new StreamResult(output));
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,105 @@
+package labs.network.benchmark;
+
+import labs.network.protocol.Message;
+import labs.network.protocol.ObjectSerializer;
+import labs.network.protocol.ObjectStreamSerializer;
+import labs.network.protocol.Serializer;
+import labs.network.protocol.UserInfo;
+import labs.network.protocol.c2s.ChatMessageC2S;
+import labs.network.protocol.s2c.EventMessageS2C;
+import labs.network.protocol.s2c.ListUsersS2C;
+import labs.network.protocol.s2c.MessageResponseS2C;
+import labs.network.protocol.s2c.UserLoginEventS2C;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ObjectSerializerBenchmark {
+    private static final String SESSION = UUID.randomUUID().toString();
+    private static final String[] IMPLEMENTATIONS = {"frame", "stream"};
+    private static final String[] MESSAGE_TYPES = {
+            "ChatMessageC2S", "EventMessageS2C", "ListUsersS2C", "MessageResponseS2C", "UserLoginEventS2C"
+    };
+
+    @Param({"frame", "stream"})
+    public String implementation;
+
+    @Param({"ChatMessageC2S", "EventMessageS2C", "ListUsersS2C", "MessageResponseS2C", "UserLoginEventS2C"})
+    public String messageType;
+
+    private Serializer sender;
+    private Serializer receiver;
+    private int sequence;
+
+    @Setup
+    public void setup() {
+        sender = create(implementation);
+        receiver = create(implementation);
+        sequence = 0;
+    }
+
+    @Benchmark
+    public Message roundTrip() {
+        return receiver.deserialize(sender.serialize(createMessage(messageType, sequence++)));
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        System.out.printf("%-20s %-8s %s%n", "message", "codec", "bytes/message");
+        for (String type : MESSAGE_TYPES) {
+            for (String implementation : IMPLEMENTATIONS) {
+                Serializer sender = create(implementation);
+                Serializer receiver = create(implementation);
+                long bytes = 0;
+                for (int i = 0; i < count; i++) {
+                    byte[] frame = sender.serialize(createMessage(type, i));
+                    receiver.deserialize(frame);
+                    bytes += frame.length;
+                }
+                System.out.printf("%-20s %-8s %.1f%n", type, implementation, (double) bytes / count);
+            }
+        }
+    }
+
+    private static Serializer create(String implementation) {
+        return "stream".equals(implementation) ? new ObjectStreamSerializer() : new ObjectSerializer();
+    }
+
+    private static Message createMessage(String type, int sequence) {
+        return switch (type) {
+            case "ChatMessageC2S" -> new ChatMessageC2S("Привет, как дела? #" + sequence, SESSION);
+            case "EventMessageS2C" -> new EventMessageS2C("Привет, как дела? #" + sequence, "user-" + (sequence % 50));
+            case "ListUsersS2C" -> new ListUsersS2C(createUsers(50));
+            case "MessageResponseS2C" -> new MessageResponseS2C();
+            case "UserLoginEventS2C" -> new UserLoginEventS2C("user-" + sequence, "desktop");
+            default -> throw new IllegalArgumentException("Unknown message type: " + type);
+        };
+    }
+
+    private static List<UserInfo> createUsers(int count) {
+        List<UserInfo> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new UserInfo("user-" + i, "desktop"));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,105 @@
+package labs.network.benchmark;
+
+import labs.network.protocol.Message;
+import labs.network.protocol.Serializer;
+import labs.network.protocol.XMLSerializer;
+import labs.network.protocol.c2s.ChatMessageC2S;
+import labs.network.protocol.s2c.EventMessageS2C;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class XMLEncodingBenchmark {
+    private static final String SESSION = UUID.randomUUID().toString();
+    private static final String[] IMPLEMENTATIONS = {"dom", "streaming"};
+    private static final String[] MESSAGE_TYPES = {"EventMessageS2C", "ChatMessageC2S"};
+    private static final int[] TEXT_LENGTHS = {32, 512, 8192};
+
+    @Param({"dom", "streaming"})
+    public String implementation;
+
+    @Param({"EventMessageS2C", "ChatMessageC2S"})
+    public String messageType;
+
+    @Param({"32", "512", "8192"})
+    public int textLength;
+
+    private Serializer serializer;
+    private Message message;
+
+    @Setup
+    public void setup() {
+        serializer = create(implementation);
+        message = createMessage(messageType, createText(textLength));
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(message);
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        System.out.printf("%-16s %6s %-10s %10s %14s%n", "message", "text", "codec", "wire bytes", "alloc/message");
+        for (String type : MESSAGE_TYPES) {
+            for (int textLength : TEXT_LENGTHS) {
+                Message message = createMessage(type, createText(textLength));
+                for (String implementation : IMPLEMENTATIONS) {
+                    Serializer serializer = create(implementation);
+                    int wireBytes = 0;
+                    for (int i = 0; i < count; i++) {
+                        wireBytes = serializer.serialize(message).length;
+                    }
+                    long before = threads.getThreadAllocatedBytes(threadId);
+                    for (int i = 0; i < count; i++) {
+                        serializer.serialize(message);
+                    }
+                    long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+                    System.out.printf("%-16s %6d %-10s %10d %14d%n",
+                            type, textLength, implementation, wireBytes, allocated / count);
+                }
+            }
+        }
+    }
+
+    private static Serializer create(String implementation) {
+        return "dom".equals(implementation) ? new DomXMLSerializer() : new XMLSerializer();
+    }
+
+    private static Message createMessage(String type, String text) {
+        return switch (type) {
+            case "EventMessageS2C" -> new EventMessageS2C(text, "alice");
+            case "ChatMessageC2S" -> new ChatMessageC2S(text, SESSION);
+            default -> throw new IllegalArgumentException("Unknown message type: " + type);
+        };
+    }
+
+    private static String createText(int length) {
+        String sample = "Привет, как дела? <3 & всё такое. ";
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append(sample);
+        }
+        return text.substring(0, length);
+    }
+}
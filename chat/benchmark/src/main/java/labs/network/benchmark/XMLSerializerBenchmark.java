@@ -0,0 +1,123 @@
+package labs.network.benchmark;
+
+import labs.network.protocol.Message;
+import labs.network.protocol.Serializer;
+import labs.network.protocol.UserInfo;
+import labs.network.protocol.XMLSerializer;
+import labs.network.protocol.c2s.ChatMessageC2S;
+import labs.network.protocol.c2s.ConnectC2S;
+import labs.network.protocol.c2s.JoinRoomC2S;
+import labs.network.protocol.c2s.LeaveRoomC2S;
+import labs.network.protocol.c2s.ListUsersC2S;
+import labs.network.protocol.c2s.LogoutC2S;
+import labs.network.protocol.c2s.PingC2S;
+import labs.network.protocol.c2s.ResumeC2S;
+import labs.network.protocol.c2s.RoomMessageC2S;
+import labs.network.protocol.s2c.ErrorS2C;
+import labs.network.protocol.s2c.EventMessageS2C;
+import labs.network.protocol.s2c.ListUsersS2C;
+import labs.network.protocol.s2c.LoginResposeS2C;
+import labs.network.protocol.s2c.LogoutResponseS2C;
+import labs.network.protocol.s2c.MessageResponseS2C;
+import labs.network.protocol.s2c.MissedMessagesS2C;
+import labs.network.protocol.s2c.PongS2C;
+import labs.network.protocol.s2c.ReconnectEventS2C;
+import labs.network.protocol.s2c.RoomMessageEventS2C;
+import labs.network.protocol.s2c.RoomResponseS2C;
+import labs.network.protocol.s2c.UserLoginEventS2C;
+import labs.network.protocol.s2c.UserLogoutEventS2C;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class XMLSerializerBenchmark {
+    private static final String SESSION = UUID.randomUUID().toString();
+
+    @Param({"dom", "streaming"})
+    public String implementation;
+
+    @Param({
+            "ConnectC2S", "ChatMessageC2S", "ListUsersC2S", "LogoutC2S",
+            "ResumeC2S", "PingC2S", "JoinRoomC2S", "LeaveRoomC2S", "RoomMessageC2S",
+            "ErrorS2C", "EventMessageS2C", "ListUsersS2C", "LoginResposeS2C",
+            "LogoutResponseS2C", "MessageResponseS2C", "UserLoginEventS2C", "UserLogoutEventS2C",
+            "PongS2C", "RoomResponseS2C", "RoomMessageEventS2C", "MissedMessagesS2C", "ReconnectEventS2C"
+    })
+    public String messageType;
+
+    private Serializer serializer;
+    private Message message;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        serializer = "dom".equals(implementation) ? new DomXMLSerializer() : new XMLSerializer();
+        message = createMessage(messageType);
+        encoded = serializer.serialize(message);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(message);
+    }
+
+    @Benchmark
+    public Message deserialize() {
+        return serializer.deserialize(encoded);
+    }
+
+    private static Message createMessage(String type) {
+        return switch (type) {
+            case "ConnectC2S" -> new ConnectC2S("alice", "desktop", "secret");
+            case "ChatMessageC2S" -> new ChatMessageC2S("Привет, как дела? <3 & всё такое", SESSION);
+            case "ListUsersC2S" -> new ListUsersC2S(SESSION);
+            case "LogoutC2S" -> new LogoutC2S(SESSION);
+            case "ResumeC2S" -> new ResumeC2S(SESSION, 1234);
+            case "PingC2S" -> new PingC2S(System.currentTimeMillis());
+            case "JoinRoomC2S" -> new JoinRoomC2S("general", SESSION);
+            case "LeaveRoomC2S" -> new LeaveRoomC2S("general", SESSION);
+            case "RoomMessageC2S" -> new RoomMessageC2S("general", "Привет, как дела? <3 & всё такое", SESSION);
+            case "ErrorS2C" -> new ErrorS2C("Неизвестная сессия");
+            case "EventMessageS2C" -> new EventMessageS2C("Привет, как дела? <3 & всё такое", "alice");
+            case "ListUsersS2C" -> new ListUsersS2C(createUsers(50));
+            case "LoginResposeS2C" -> new LoginResposeS2C(SESSION);
+            case "LogoutResponseS2C" -> new LogoutResponseS2C();
+            case "MessageResponseS2C" -> new MessageResponseS2C();
+            case "UserLoginEventS2C" -> new UserLoginEventS2C("alice", "desktop");
+            case "UserLogoutEventS2C" -> new UserLogoutEventS2C("alice");
+            case "PongS2C" -> new PongS2C(System.currentTimeMillis());
+            case "RoomResponseS2C" -> new RoomResponseS2C("general", true);
+            case "RoomMessageEventS2C" -> new RoomMessageEventS2C("general", "Привет, как дела? <3 & всё такое", "alice");
+            case "MissedMessagesS2C" -> new MissedMessagesS2C(42);
+            case "ReconnectEventS2C" -> new ReconnectEventS2C(1500);
+            default -> throw new IllegalArgumentException("Unknown message type: " + type);
+        };
+    }
+
+    private static List<UserInfo> createUsers(int count) {
+        List<UserInfo> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new UserInfo("user-" + i, "desktop"));
+        }
+        return users;
+    }
+}
@@ -50,7 +50,7 @@ public class AppController {
     @FXML
     private void initialize() {
         client = new Client(new UiListener());
-        serializerChoice.setItems(FXCollections.observableArrayList("xml", "object"));
+        serializerChoice.setItems(FXCollections.observableArrayList("xml", "object", "object-stream", "binary"));
         serializerChoice.setValue("xml");
         hostField.setText("localhost");
         portField.setText("6666");
@@ -78,9 +78,12 @@ public class AppController {
             appendError("Плохой порт");
             return;
         }
-        Client.SerializerMode mode = "object".equalsIgnoreCase(serializerChoice.getValue())
-                ? Client.SerializerMode.OBJECT
-                : Client.SerializerMode.XML;
+        Client.SerializerMode mode = switch (serializerChoice.getValue()) {
+            case "object" -> Client.SerializerMode.OBJECT;
+            case "object-stream" -> Client.SerializerMode.OBJECT_STREAM;
+            case "binary" -> Client.SerializerMode.BINARY;
+            default -> Client.SerializerMode.XML;
+        };
 
         client.start(host, port, name, password, clientType, mode);
         updateButtons(true);
@@ -207,5 +210,10 @@ public class AppController {
             userInfos = newUsers;
             updateUsers();
         }
+
+        @Override
+        public void onMissedMessages(int count) {
+            appendInfo("Пропущено сообщений: " + count);
+        }
     }
 }
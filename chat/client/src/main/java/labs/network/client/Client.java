@@ -3,42 +3,84 @@ package labs.network.client;
 import labs.network.protocol.*;
 import labs.network.protocol.c2s.ChatMessageC2S;
 import labs.network.protocol.c2s.ConnectC2S;
+import labs.network.protocol.c2s.JoinRoomC2S;
+import labs.network.protocol.c2s.LeaveRoomC2S;
 import labs.network.protocol.c2s.ListUsersC2S;
 import labs.network.protocol.c2s.LogoutC2S;
+import labs.network.protocol.c2s.PingC2S;
+import labs.network.protocol.c2s.ResumeC2S;
+import labs.network.protocol.c2s.RoomMessageC2S;
 import labs.network.protocol.s2c.ErrorS2C;
 import labs.network.protocol.s2c.EventMessageS2C;
 import labs.network.protocol.s2c.ListUsersS2C;
 import labs.network.protocol.s2c.LoginResposeS2C;
 import labs.network.protocol.s2c.LogoutResponseS2C;
+import labs.network.protocol.s2c.MissedMessagesS2C;
+import labs.network.protocol.s2c.ReconnectEventS2C;
+import labs.network.protocol.s2c.RoomMessageEventS2C;
+import labs.network.protocol.s2c.RoomResponseS2C;
 import labs.network.protocol.s2c.UserLoginEventS2C;
 import labs.network.protocol.s2c.UserLogoutEventS2C;
 
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 public class Client {
     private static final int RECONNECT_TIMEOUT = 2;
     private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HEARTBEAT_MISSES = 3;
+    private static final String TLS_SCHEME = "tls://";
+    private static final int COMPRESSION_THRESHOLD = 1024;
+    private static final int MAX_DECOMPRESSED_SIZE = 4 * 1024 * 1024;
 
     private final Listener listener;
 
-    private String host;
-    private int port;
+    private final List<Endpoint> endpoints = new ArrayList<>();
 
     private String userName;
     private String password;
     private String clientType;
+    private SerializerMode serializerMode;
     private Serializer serializer;
+    private boolean offerCompression = true;
+    private FrameCompressor compressor;
+    private volatile FrameCompressor outgoingCompressor;
 
     private String session;
-    private SocketChannel channel;
+    private volatile String resumeSession;
+    private volatile int lastMessageIndex = -1;
+    private int reconnectDelayMillis = -1;
+    private volatile long presenceVersion = -1;
+    private final Map<String, UserInfo> onlineUsers = new TreeMap<>();
+    private long pageVersion = -1;
+    private boolean pagingUsers = false;
+    private ByteChannel channel;
+    private final Map<Long, CompletableFuture<Message>> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicLong nextRequestId = new AtomicLong();
     private final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
     private Thread workerThread;
+    private Thread heartbeatThread;
+    private volatile int heartbeatSeconds = 0;
+    private volatile long lastReceivedAt;
+    private volatile boolean heartbeatExpired = false;
     private boolean running;
 
     public Client(Listener listener) {
@@ -51,12 +93,25 @@ public class Client {
         if (running) {
             return;
         }
-        this.host = host;
-        this.port = port;
+        endpoints.clear();
+        for (String address : host.split(",")) {
+            String entry = address.strip();
+            boolean tls = entry.startsWith(TLS_SCHEME);
+            if (tls) {
+                entry = entry.substring(TLS_SCHEME.length());
+            }
+            int colon = entry.lastIndexOf(':');
+            if (colon > 0) {
+                endpoints.add(new Endpoint(entry.substring(0, colon), Integer.parseInt(entry.substring(colon + 1)), tls));
+            } else if (!entry.isEmpty()) {
+                endpoints.add(new Endpoint(entry, port, tls));
+            }
+        }
         this.userName = userName;
         this.password = password;
         this.clientType = clientType;
-        this.serializer = serializerMode == SerializerMode.OBJECT ? new ObjectSerializer() : new XMLSerializer();
+        this.serializerMode = serializerMode;
+        this.serializer = newSerializer();
 
         workerThread = Thread.ofVirtual().start(this::runLoop);
         running = true;
@@ -72,6 +127,19 @@ public class Client {
         listener.onStopped();
     }
 
+    public void setCompression(boolean enabled) {
+        this.offerCompression = enabled;
+    }
+
+    private Serializer newSerializer() {
+        return switch (serializerMode) {
+            case OBJECT -> new ObjectSerializer();
+            case OBJECT_STREAM -> new ObjectStreamSerializer();
+            case BINARY -> new BinarySerializer();
+            case XML -> new XMLSerializer();
+        };
+    }
+
     private void runLoop() {
         int attempt = 0;
         while (running) {
@@ -79,26 +147,40 @@ public class Client {
             attempt += 1;
 
             try {
-                channel = SocketChannel.open(new InetSocketAddress(host, port));
-                channel.configureBlocking(true);
+                channel = connect(endpoints.get((attempt - 1) % endpoints.size()));
+                readBuffer.clear();
+                if (serializer.isStateful()) {
+                    serializer = newSerializer();
+                }
+                compressor = offerCompression ? new FrameCompressor(COMPRESSION_THRESHOLD, Deflater.BEST_SPEED) : null;
+                outgoingCompressor = null;
+                heartbeatExpired = false;
                 if (!tryLogin()) {
                     stop();
                     return;
                 }
+                startHeartbeat(channel);
                 readMessages();
             } catch (IOException e) {
                 if (running) {
-                    listener.onDisconnected(e.getMessage());
+                    listener.onDisconnected(heartbeatExpired ? "Server stopped answering heartbeats" : e.getMessage());
                 }
             } finally {
+                stopHeartbeat();
                 session = null;
                 closeSocket();
+                if (compressor != null) {
+                    compressor.close();
+                }
+                failPendingRequests("Disconnected");
             }
             if (!running) {
                 break;
             }
+            long delayMillis = reconnectDelayMillis >= 0 ? reconnectDelayMillis : TimeUnit.SECONDS.toMillis(RECONNECT_TIMEOUT);
+            reconnectDelayMillis = -1;
             try {
-                TimeUnit.SECONDS.sleep(RECONNECT_TIMEOUT);
+                TimeUnit.MILLISECONDS.sleep(delayMillis);
             } catch (InterruptedException ignored) {
                 Thread.currentThread().interrupt();
                 return;
@@ -109,14 +191,34 @@ public class Client {
     private void readMessages() throws IOException {
         while (running) {
             Message message = receive();
+            completeRequest(message);
             switch (message) {
-                case EventMessageS2C eventMessage ->
-                        listener.onChatMessage(eventMessage.getFromName(), eventMessage.getMessage());
+                case EventMessageS2C eventMessage -> {
+                    if (eventMessage.getIndex() >= 0) {
+                        lastMessageIndex = eventMessage.getIndex();
+                    }
+                    listener.onChatMessage(eventMessage.getFromName(), eventMessage.getMessage());
+                }
                 case UserLoginEventS2C userLoginEvent ->
                         listener.onUserJoined(userLoginEvent.getName(), userLoginEvent.getClientType());
                 case UserLogoutEventS2C userLogoutEvent -> listener.onUserLeft(userLogoutEvent.getName());
-                case ListUsersS2C listUsers -> listener.onUsers(listUsers.getUsers());
+                case ListUsersS2C listUsers -> applyUsers(listUsers);
                 case ErrorS2C error -> listener.onError(error.getMessage());
+                case MissedMessagesS2C missed -> listener.onMissedMessages(missed.getCount());
+                case RoomMessageEventS2C roomMessage ->
+                        listener.onRoomMessage(roomMessage.getRoom(), roomMessage.getFromName(), roomMessage.getMessage());
+                case RoomResponseS2C roomResponse -> {
+                    if (roomResponse.isJoined()) {
+                        listener.onRoomJoined(roomResponse.getRoom());
+                    } else {
+                        listener.onRoomLeft(roomResponse.getRoom());
+                    }
+                }
+                case ReconnectEventS2C reconnect -> {
+                    reconnectDelayMillis = reconnect.getDelayMillis();
+                    listener.onDisconnected("Server is restarting");
+                    return;
+                }
                 case LogoutResponseS2C logout -> {
                     return;
                 }
@@ -127,12 +229,20 @@ public class Client {
     }
 
     private boolean tryLogin() throws IOException {
-        if (!send(new ConnectC2S(userName, clientType, password))) {
+        if (resumeSession != null && tryResume()) {
+            return true;
+        }
+        if (!send(new ConnectC2S(userName, clientType, password, compressionOffer()))) {
             return false;
         }
         Message response = receive();
         if (response instanceof LoginResposeS2C loginResposeS2C) {
             session = loginResposeS2C.getSession();
+            heartbeatSeconds = loginResposeS2C.getHeartbeatSeconds();
+            applyCompression(loginResposeS2C.getCompression());
+            resumeSession = session;
+            presenceVersion = -1;
+            pagingUsers = false;
             listener.onConnected(userName);
             return true;
         }
@@ -142,42 +252,219 @@ public class Client {
         return false;
     }
 
-    public void sendChatMessage(String text) {
+    public CompletableFuture<Message> sendChatMessage(String text) {
         if (text == null || text.isBlank()) {
-            return;
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Empty message"));
         }
         String currentSession = session;
         if (currentSession == null) {
-            listener.onError("Not connected");
-            return;
+            return notConnected();
+        }
+        return request(new ChatMessageC2S(text.strip(), currentSession));
+    }
+
+    public CompletableFuture<Message> requestUsers() {
+        String currentSession = session;
+        if (currentSession == null) {
+            return notConnected();
         }
-        send(new ChatMessageC2S(text.strip(), currentSession));
+        return request(new ListUsersC2S(currentSession, presenceVersion, null, 0));
     }
 
-    public void requestUsers() {
+    public CompletableFuture<Message> joinRoom(String room) {
         String currentSession = session;
         if (currentSession == null) {
-            listener.onError("Not connected");
+            return notConnected();
+        }
+        return request(new JoinRoomC2S(room, currentSession));
+    }
+
+    public CompletableFuture<Message> leaveRoom(String room) {
+        String currentSession = session;
+        if (currentSession == null) {
+            return notConnected();
+        }
+        return request(new LeaveRoomC2S(room, currentSession));
+    }
+
+    public CompletableFuture<Message> sendRoomMessage(String room, String text) {
+        if (text == null || text.isBlank()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Empty message"));
+        }
+        String currentSession = session;
+        if (currentSession == null) {
+            return notConnected();
+        }
+        return request(new RoomMessageC2S(room, text.strip(), currentSession));
+    }
+
+    private CompletableFuture<Message> notConnected() {
+        listener.onError("Not connected");
+        return CompletableFuture.failedFuture(new IOException("Not connected"));
+    }
+
+    private CompletableFuture<Message> request(Message message) {
+        long requestId = nextRequestId.incrementAndGet();
+        message.setRequestId(requestId);
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        pendingRequests.put(requestId, future);
+        if (!send(message)) {
+            pendingRequests.remove(requestId);
+            future.completeExceptionally(new IOException("Failed to send request"));
+        }
+        return future;
+    }
+
+    private void completeRequest(Message response) {
+        if (response.getRequestId() == 0) {
+            return;
+        }
+        CompletableFuture<Message> future = pendingRequests.remove(response.getRequestId());
+        if (future == null) {
+            return;
+        }
+        if (response instanceof ErrorS2C error) {
+            future.completeExceptionally(new RequestException(error.getMessage()));
+        } else {
+            future.complete(response);
+        }
+    }
+
+    private void failPendingRequests(String reason) {
+        for (Long requestId : List.copyOf(pendingRequests.keySet())) {
+            CompletableFuture<Message> future = pendingRequests.remove(requestId);
+            if (future != null) {
+                future.completeExceptionally(new IOException(reason));
+            }
+        }
+    }
+
+    private void applyUsers(ListUsersS2C listUsers) {
+        if (!listUsers.isDelta() && !pagingUsers) {
+            onlineUsers.clear();
+            pageVersion = listUsers.getVersion();
+        }
+        for (UserInfo user : listUsers.getUsers()) {
+            onlineUsers.put(user.name(), user);
+        }
+        for (String name : listUsers.getRemoved()) {
+            onlineUsers.remove(name);
+        }
+        if (listUsers.getNext() != null) {
+            pagingUsers = true;
+            send(new ListUsersC2S(session, -1, listUsers.getNext(), 0));
             return;
         }
-        send(new ListUsersC2S(currentSession));
+        pagingUsers = false;
+        presenceVersion = listUsers.isDelta() ? listUsers.getVersion() : pageVersion;
+        listener.onUsers(new ArrayList<>(onlineUsers.values()));
+    }
+
+    private boolean tryResume() throws IOException {
+        if (!send(new ResumeC2S(resumeSession, lastMessageIndex, compressionOffer()))) {
+            return false;
+        }
+        Message response = receive();
+        if (response instanceof LoginResposeS2C loginResposeS2C) {
+            session = loginResposeS2C.getSession();
+            heartbeatSeconds = loginResposeS2C.getHeartbeatSeconds();
+            applyCompression(loginResposeS2C.getCompression());
+            listener.onConnected(userName);
+            return true;
+        }
+        resumeSession = null;
+        return false;
+    }
+
+    private String compressionOffer() {
+        return compressor != null ? FrameCompressor.DEFLATE : "";
+    }
+
+    private void applyCompression(String negotiated) {
+        outgoingCompressor = compressor != null && FrameCompressor.DEFLATE.equals(negotiated) ? compressor : null;
+    }
+
+    private ByteChannel connect(Endpoint endpoint) throws IOException {
+        if (!endpoint.tls()) {
+            SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress(endpoint.host(), endpoint.port()));
+            socketChannel.configureBlocking(true);
+            return socketChannel;
+        }
+        SSLSocket socket = (SSLSocket) SSLSocketFactory.getDefault().createSocket(endpoint.host(), endpoint.port());
+        try {
+            socket.setTcpNoDelay(true);
+            SSLParameters parameters = socket.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            socket.setSSLParameters(parameters);
+            socket.startHandshake();
+            return new TlsChannel(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private void startHeartbeat(ByteChannel current) {
+        lastReceivedAt = System.nanoTime();
+        int interval = heartbeatSeconds;
+        if (interval > 0) {
+            heartbeatThread = Thread.ofVirtual().start(() -> heartbeatLoop(current, interval));
+        }
+    }
+
+    private void stopHeartbeat() {
+        Thread thread = heartbeatThread;
+        heartbeatThread = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void heartbeatLoop(ByteChannel current, int intervalSeconds) {
+        long timeout = TimeUnit.SECONDS.toNanos(intervalSeconds) * HEARTBEAT_MISSES;
+        while (running && current.isOpen()) {
+            try {
+                TimeUnit.SECONDS.sleep(intervalSeconds);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (System.nanoTime() - lastReceivedAt > timeout) {
+                heartbeatExpired = true;
+                try {
+                    current.close();
+                } catch (IOException ignored) {
+                }
+                return;
+            }
+            send(new PingC2S(System.currentTimeMillis()));
+        }
     }
 
     private void requestLogout() {
+        resumeSession = null;
         send(new LogoutC2S(session));
     }
 
-    private boolean send(Message message) {
-        if (serializer == null) {
+    private synchronized boolean send(Message message) {
+        if (serializer == null || channel == null) {
             return false;
         }
         try {
             byte[] payload = serializer.serialize(message);
+            int prefix = payload.length;
+            FrameCompressor current = outgoingCompressor;
+            byte[] compressed = current != null ? current.compress(payload) : null;
+            if (compressed != null) {
+                payload = compressed;
+                prefix = compressed.length | FrameCompressor.COMPRESSED_FLAG;
+            }
             ByteBuffer buf = ByteBuffer.allocate(4 + payload.length);
-            buf.putInt(payload.length);
+            buf.putInt(prefix);
             buf.put(payload);
             buf.flip();
-            channel.write(buf);
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
             return true;
         } catch (IOException e) {
             listener.onError(e.getMessage());
@@ -192,7 +479,8 @@ public class Client {
         while (readBuffer.position() < 4) {
             if (channel.read(readBuffer) == -1) throw new IOException("Disconnected");
         }
-        int length = readBuffer.getInt(0);
+        int prefix = readBuffer.getInt(0);
+        int length = FrameCompressor.length(prefix);
         if (length <= 0 || length > BUFFER_SIZE - 4) {
             throw new IOException("Invalid message length: " + length);
         }
@@ -204,6 +492,13 @@ public class Client {
         byte[] payload = new byte[length];
         readBuffer.get(payload);
         readBuffer.compact();
+        lastReceivedAt = System.nanoTime();
+        if (FrameCompressor.isCompressed(prefix)) {
+            if (compressor == null) {
+                throw new IOException("Unexpected compressed frame");
+            }
+            payload = compressor.decompress(payload, 0, length, MAX_DECOMPRESSED_SIZE);
+        }
 
         return serializer.deserialize(payload);
     }
@@ -217,9 +512,59 @@ public class Client {
         }
     }
 
+    private record Endpoint(String host, int port, boolean tls) {
+    }
+
+    private static final class TlsChannel implements ByteChannel {
+        private final SSLSocket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        private TlsChannel(SSLSocket socket) throws IOException {
+            this.socket = socket;
+            this.in = socket.getInputStream();
+            this.out = socket.getOutputStream();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int read = in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (read > 0) {
+                dst.position(dst.position() + read);
+            }
+            return read;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int length = src.remaining();
+            out.write(src.array(), src.arrayOffset() + src.position(), length);
+            src.position(src.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !socket.isClosed();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    public static class RequestException extends RuntimeException {
+        public RequestException(String message) {
+            super(message);
+        }
+    }
+
     public enum SerializerMode {
         XML,
-        OBJECT
+        OBJECT,
+        OBJECT_STREAM,
+        BINARY
     }
 
     public interface Listener {
@@ -240,5 +585,16 @@ public class Client {
         void onUserLeft(String username);
 
         void onUsers(List<UserInfo> users);
+
+        void onMissedMessages(int count);
+
+        default void onRoomJoined(String room) {
+        }
+
+        default void onRoomLeft(String room) {
+        }
+
+        default void onRoomMessage(String room, String from, String text) {
+        }
     }
 }
@@ -2,6 +2,16 @@ package labs.network.load_tester;
 
 import labs.network.protocol.UserInfo;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -11,6 +21,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
 
 public class AppController {
+    private static final int TICKET_TIMEOUT_MILLIS = 1000;
+
     public int run(String[] args) {
         Config config;
         try {
@@ -26,17 +38,48 @@ public class AppController {
             return 0;
         }
 
+        try {
+            if (config.handshakes > 0) {
+                runHandshakePhase(config);
+            }
+            if (!config.compare) {
+                printReport(config, runLoad(config, config.tlsPort > 0), config.tlsPort > 0);
+                return 0;
+            }
+            Stats plain = runLoad(config, false);
+            printReport(config, plain, false);
+            Stats tls = runLoad(config, true);
+            printReport(config, tls, true);
+            double plainThroughput = throughput(plain);
+            System.out.printf(Locale.ROOT, "%nTLS throughput delta: %+.2f%% (%.2f -> %.2f msg/sec)%n",
+                    (throughput(tls) - plainThroughput) * 100.0 / Math.max(0.001, plainThroughput),
+                    plainThroughput, throughput(tls));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("[error] interrupted");
+            return 1;
+        } catch (IOException | GeneralSecurityException e) {
+            System.err.println("[error] " + e.getMessage());
+            return 1;
+        }
+        return 0;
+    }
+
+    private Stats runLoad(Config config, boolean tls) throws InterruptedException {
         List<Client> clients = new ArrayList<>(config.clients);
         Stats stats = new Stats();
         CountDownLatch connectedLatch = new CountDownLatch(config.clients);
 
-        System.out.printf("Starting load test: host=%s port=%d clients=%d messagesPerClient=%d serializer=%s%n",
-                config.host, config.port, config.clients, config.messagesPerClient, config.serializerMode);
+        System.out.printf("Starting load test: host=%s port=%d tls=%s clients=%d messagesPerClient=%d serializer=%s%n",
+                config.host, tls ? config.tlsPort : config.port, tls, config.clients, config.messagesPerClient,
+                config.serializerMode);
 
+        String[] hosts = tls ? tlsHosts(config) : config.host.split(",");
         for (int i = 0; i < config.clients; i++) {
             String username = config.usernamePrefix + i;
             Client client = new Client(new LoadListener(username, connectedLatch, stats));
-            client.start(config.host, config.port, username, config.password, config.clientType, config.serializerMode);
+            client.setCompression(config.compression);
+            client.start(rotateHosts(hosts, i), config.port, username, config.password, config.clientType, config.serializerMode);
             clients.add(client);
             if (config.rampUpMillis > 0) {
                 sleepQuietly(config.rampUpMillis);
@@ -50,27 +93,126 @@ public class AppController {
             }
 
             runSendPhase(config, clients, stats);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            System.err.println("[error] interrupted");
-            return 1;
         } finally {
             clients.forEach(Client::stop);
         }
+        return stats;
+    }
 
-        printReport(config, stats);
-        return 0;
+    private void runHandshakePhase(Config config) throws IOException, GeneralSecurityException, InterruptedException {
+        String host = config.host.split(",")[0].strip();
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init((KeyStore) null);
+        SSLContext shared = SSLContext.getInstance("TLS");
+        shared.init(null, trust.getTrustManagers(), null);
+        handshake(shared.getSocketFactory(), host, config.tlsPort, true);
+
+        System.out.printf("Measuring TLS handshakes: host=%s port=%d handshakes=%d concurrency=%d%n",
+                host, config.tlsPort, config.handshakes, Math.min(config.clients, config.handshakes));
+        HandshakeStats full = measureHandshakes(config, () -> {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, trust.getTrustManagers(), null);
+            return handshake(context.getSocketFactory(), host, config.tlsPort, false);
+        });
+        HandshakeStats resumed = measureHandshakes(config,
+                () -> handshake(shared.getSocketFactory(), host, config.tlsPort, true));
+
+        System.out.println();
+        System.out.println("=== TLS Handshake Report ===");
+        printHandshakes("Full handshakes", full);
+        printHandshakes("Resumed handshakes", resumed);
+    }
+
+    private HandshakeStats measureHandshakes(Config config, HandshakeTask task) throws InterruptedException {
+        AtomicInteger remaining = new AtomicInteger(config.handshakes);
+        LongAdder completed = new LongAdder();
+        LongAdder failed = new LongAdder();
+        LongAdder resumed = new LongAdder();
+        LongAdder latencyNs = new LongAdder();
+        int concurrency = Math.min(config.clients, config.handshakes);
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long startNs = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    while (remaining.getAndDecrement() > 0) {
+                        try {
+                            HandshakeResult result = task.run();
+                            latencyNs.add(result.latencyNs());
+                            completed.increment();
+                            if (result.resumed()) {
+                                resumed.increment();
+                            }
+                        } catch (IOException | GeneralSecurityException e) {
+                            failed.increment();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        if (!done.await(config.sendTimeoutSeconds, TimeUnit.SECONDS)) {
+            System.err.println("[warn] handshake timeout reached");
+        }
+        return new HandshakeStats(completed.sum(), failed.sum(), resumed.sum(), System.nanoTime() - startNs,
+                latencyNs.sum());
+    }
+
+    private static HandshakeResult handshake(SSLSocketFactory factory, String host, int port, boolean keepTicket)
+            throws IOException {
+        long beginMillis = System.currentTimeMillis();
+        long beginNs = System.nanoTime();
+        try (SSLSocket socket = (SSLSocket) factory.createSocket(host, port)) {
+            SSLParameters parameters = socket.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            socket.setSSLParameters(parameters);
+            socket.startHandshake();
+            long latencyNs = System.nanoTime() - beginNs;
+            // A resumed session keeps the creation time of the handshake that minted its ticket
+            SSLSession session = socket.getSession();
+            boolean resumed = session.getCreationTime() < beginMillis;
+            if (keepTicket) {
+                readSessionTicket(socket);
+            }
+            return new HandshakeResult(latencyNs, resumed);
+        }
+    }
+
+    // TLS 1.3 tickets arrive after the handshake and are only cached once the client reads past them,
+    // so half-close and wait for the server to answer or hang up.
+    private static void readSessionTicket(SSLSocket socket) throws IOException {
+        socket.setSoTimeout(TICKET_TIMEOUT_MILLIS);
+        socket.shutdownOutput();
+        try {
+            socket.getInputStream().read();
+        } catch (SocketTimeoutException ignored) {
+        }
+    }
+
+    private static void printHandshakes(String label, HandshakeStats stats) {
+        double seconds = Math.max(0.001, stats.durationNs() / 1_000_000_000.0);
+        double avgMillis = stats.completed() > 0 ? stats.latencyNs() / 1_000_000.0 / stats.completed() : 0;
+        System.out.printf(Locale.ROOT, "%s: %d ok (%d resumed), %d failed, %.2f/sec, avg %.3f ms%n",
+                label, stats.completed(), stats.resumed(), stats.failed(), stats.completed() / seconds, avgMillis);
     }
 
     private void runSendPhase(Config config, List<Client> clients, Stats stats) throws InterruptedException {
         long startNs = System.nanoTime();
         CountDownLatch sendLatch = new CountDownLatch(clients.size());
 
-        for (Client client : clients) {
+        for (int c = 0; c < clients.size(); c++) {
+            Client client = clients.get(c);
+            String room = config.rooms > 0 ? "room-" + (c % config.rooms) : null;
             Thread.ofVirtual().start(() -> {
                 try {
+                    if (room != null) {
+                        client.joinRoom(room);
+                    }
                     for (int i = 0; i < config.messagesPerClient; i++) {
-                        if (client.sendChatMessage(config.messageTemplate + i)) {
+                        String text = config.messageTemplate + i;
+                        boolean sent = room != null ? client.sendRoomMessage(room, text) : client.sendChatMessage(text);
+                        if (sent) {
                             stats.sent.increment();
                         } else {
                             stats.sendFailed.increment();
@@ -92,7 +234,7 @@ public class AppController {
         }
     }
 
-    private void printReport(Config config, Stats stats) {
+    private void printReport(Config config, Stats stats, boolean tls) {
         long sent = stats.sent.sum();
         long failed = stats.sendFailed.sum();
         long errors = stats.errors.sum();
@@ -101,36 +243,68 @@ public class AppController {
         long received = stats.receivedMessages.sum();
 
         double seconds = Math.max(0.001, stats.durationNs.get() / 1_000_000_000.0);
-        double throughput = sent / seconds;
+        double throughput = throughput(stats);
 
         System.out.println();
         System.out.println("=== Load Test Report ===");
-        System.out.printf("Target: %s:%d%n", config.host, config.port);
+        System.out.printf("Target: %s:%d%s%n", config.host, tls ? config.tlsPort : config.port, tls ? " (TLS)" : "");
         System.out.printf("Clients: %d (connected: %d, disconnected events: %d)%n", config.clients, connected, disconnected);
         System.out.printf("Messages requested: %d%n", (long) config.clients * config.messagesPerClient);
         System.out.printf("Messages sent: %d%n", sent);
         System.out.printf("Send failed: %d%n", failed);
         System.out.printf("Client errors: %d%n", errors);
         System.out.printf("Incoming chat events: %d%n", received);
+        System.out.printf("Missed chat events (server-side overflow): %d%n", stats.missedMessages.sum());
         System.out.printf("Send phase duration: %.3f sec%n", seconds);
         System.out.printf(Locale.ROOT, "Send throughput: %.2f msg/sec%n", throughput);
     }
 
+    private static double throughput(Stats stats) {
+        return stats.sent.sum() / Math.max(0.001, stats.durationNs.get() / 1_000_000_000.0);
+    }
+
+    private static String[] tlsHosts(Config config) {
+        String[] hosts = config.host.split(",");
+        for (int i = 0; i < hosts.length; i++) {
+            String host = hosts[i].strip();
+            int portSeparator = host.lastIndexOf(':');
+            hosts[i] = "tls://" + (portSeparator > 0 ? host.substring(0, portSeparator) : host) + ":" + config.tlsPort;
+        }
+        return hosts;
+    }
+
+    private static String rotateHosts(String[] hosts, int offset) {
+        StringBuilder rotated = new StringBuilder();
+        for (int i = 0; i < hosts.length; i++) {
+            if (i > 0) {
+                rotated.append(',');
+            }
+            rotated.append(hosts[(offset + i) % hosts.length]);
+        }
+        return rotated.toString();
+    }
+
     private void printUsage() {
         System.out.println("Usage: load_tester [options]");
-        System.out.println("  --host <host>                 default: localhost");
+        System.out.println("  --host <host[:port],...>      clients are spread across hosts, default: localhost");
         System.out.println("  --port <port>                 default: 6666");
         System.out.println("  --clients <count>             default: 50");
         System.out.println("  --messages <count>            messages per client, default: 200");
-        System.out.println("  --serializer <xml|object>     default: xml");
+        System.out.println("  --serializer <xml|object|object-stream|binary> default: xml");
         System.out.println("  --password <password>         default: empty");
         System.out.println("  --client-type <type>          default: load-tester");
         System.out.println("  --username-prefix <prefix>    default: lt-");
         System.out.println("  --message-template <prefix>   default: ping-");
         System.out.println("  --ramp-up-ms <ms>             delay between client starts, default: 0");
+        System.out.println("  --rooms <count>               spread clients over rooms, default: 0 (global chat)");
         System.out.println("  --think-time-ms <ms>          delay between messages, default: 0");
         System.out.println("  --connect-timeout-sec <sec>   default: 20");
         System.out.println("  --send-timeout-sec <sec>      default: 120");
+        System.out.println("  --tls-port <port>             connect over TLS to this port, default: 0 (plaintext)");
+        System.out.println("  --handshakes <count>          measure full and resumed TLS handshake rate first, default: 0");
+        System.out.println("  --compare                     run plaintext and TLS back to back and print the throughput delta");
+        System.out.println("  --no-compression              do not offer deflate compression at login");
+        System.out.println("  TLS trust store: -Djavax.net.ssl.trustStore=<path> -Djavax.net.ssl.trustStorePassword=<password>");
         System.out.println("  --help");
     }
 
@@ -186,6 +360,11 @@ public class AppController {
             stats.receivedMessages.increment();
         }
 
+        @Override
+        public void onRoomMessage(String room, String from, String text) {
+            stats.receivedMessages.increment();
+        }
+
         @Override
         public void onError(String text) {
             stats.errors.increment();
@@ -209,6 +388,21 @@ public class AppController {
         @Override
         public void onUsers(List<UserInfo> users) {
         }
+
+        @Override
+        public void onMissedMessages(int count) {
+            stats.missedMessages.add(count);
+        }
+    }
+
+    private interface HandshakeTask {
+        HandshakeResult run() throws IOException, GeneralSecurityException;
+    }
+
+    private record HandshakeResult(long latencyNs, boolean resumed) {
+    }
+
+    private record HandshakeStats(long completed, long failed, long resumed, long durationNs, long latencyNs) {
     }
 
     private static final class Stats {
@@ -219,6 +413,7 @@ public class AppController {
         private final LongAdder sendFailed = new LongAdder();
         private final LongAdder errors = new LongAdder();
         private final LongAdder receivedMessages = new LongAdder();
+        private final LongAdder missedMessages = new LongAdder();
         private final java.util.concurrent.atomic.AtomicLong durationNs = new java.util.concurrent.atomic.AtomicLong();
         private final List<String> firstErrors = new ArrayList<>();
     }
@@ -234,8 +429,13 @@ public class AppController {
         private String messageTemplate = "ping-";
         private int rampUpMillis = 0;
         private int thinkTimeMillis = 0;
+        private int rooms = 0;
         private int connectTimeoutSeconds = 20;
         private int sendTimeoutSeconds = 120;
+        private int tlsPort = 0;
+        private int handshakes = 0;
+        private boolean compare = false;
+        private boolean compression = true;
         private boolean help = false;
         private Client.SerializerMode serializerMode = Client.SerializerMode.XML;
 
@@ -253,14 +453,22 @@ public class AppController {
                     case "--username-prefix" -> cfg.usernamePrefix = requireValue(arg, args, ++i);
                     case "--message-template" -> cfg.messageTemplate = requireValue(arg, args, ++i);
                     case "--ramp-up-ms" -> cfg.rampUpMillis = parseInt(arg, requireValue(arg, args, ++i), 0, 60_000);
+                    case "--rooms" -> cfg.rooms = parseInt(arg, requireValue(arg, args, ++i), 0, 100_000);
                     case "--think-time-ms" -> cfg.thinkTimeMillis = parseInt(arg, requireValue(arg, args, ++i), 0, 60_000);
                     case "--connect-timeout-sec" -> cfg.connectTimeoutSeconds = parseInt(arg, requireValue(arg, args, ++i), 1, 3600);
                     case "--send-timeout-sec" -> cfg.sendTimeoutSeconds = parseInt(arg, requireValue(arg, args, ++i), 1, 24 * 3600);
                     case "--serializer" -> cfg.serializerMode = parseSerializer(requireValue(arg, args, ++i));
+                    case "--tls-port" -> cfg.tlsPort = parseInt(arg, requireValue(arg, args, ++i), 1, 65535);
+                    case "--handshakes" -> cfg.handshakes = parseInt(arg, requireValue(arg, args, ++i), 0, 10_000_000);
+                    case "--compare" -> cfg.compare = true;
+                    case "--no-compression" -> cfg.compression = false;
                     case "--help" -> cfg.help = true;
                     default -> throw new IllegalArgumentException("Unknown argument: " + arg);
                 }
             }
+            if (cfg.tlsPort == 0 && (cfg.handshakes > 0 || cfg.compare)) {
+                throw new IllegalArgumentException("--handshakes and --compare require --tls-port");
+            }
             return cfg;
         }
 
@@ -290,7 +498,13 @@ public class AppController {
             if ("object".equalsIgnoreCase(raw)) {
                 return Client.SerializerMode.OBJECT;
             }
-            throw new IllegalArgumentException("Unsupported serializer: " + raw + ". Use xml or object");
+            if ("object-stream".equalsIgnoreCase(raw)) {
+                return Client.SerializerMode.OBJECT_STREAM;
+            }
+            if ("binary".equalsIgnoreCase(raw)) {
+                return Client.SerializerMode.BINARY;
+            }
+            throw new IllegalArgumentException("Unsupported serializer: " + raw + ". Use xml, object, object-stream or binary");
         }
     }
 }
@@ -4,3 +4,12 @@ plugins {
 
 group = "labs.network.protocol"
 version = "1.0.0"
+
+dependencies {
+    testImplementation("org.junit.jupiter:junit-jupiter:5.12.1")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
@@ -0,0 +1,75 @@
+package labs.network.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+public final class BinaryReader {
+    private final byte[] data;
+    private int position;
+    private final int limit;
+
+    public BinaryReader(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    public BinaryReader(byte[] data, int offset, int length) {
+        this.data = data;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    public int readByte() {
+        require(1);
+        return data[position++] & 0xFF;
+    }
+
+    public int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varint");
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varlong");
+    }
+
+    public String readString() {
+        int length = readVarInt();
+        if (length < 0) {
+            throw new SerializationException("Negative string length: " + length);
+        }
+        require(length);
+        String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    public void requireEnd() {
+        if (position != limit) {
+            throw new SerializationException("Trailing bytes in binary message: " + (limit - position));
+        }
+    }
+
+    private void require(int count) {
+        if (count > limit - position) {
+            throw new SerializationException("Unexpected end of binary message");
+        }
+    }
+}
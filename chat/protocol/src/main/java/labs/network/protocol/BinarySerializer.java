@@ -0,0 +1,68 @@
+package labs.network.protocol;
+
+import labs.network.protocol.c2s.ChatMessageC2S;
+import labs.network.protocol.c2s.ConnectC2S;
+import labs.network.protocol.c2s.JoinRoomC2S;
+import labs.network.protocol.c2s.LeaveRoomC2S;
+import labs.network.protocol.c2s.ListUsersC2S;
+import labs.network.protocol.c2s.LogoutC2S;
+import labs.network.protocol.c2s.PingC2S;
+import labs.network.protocol.c2s.ResumeC2S;
+import labs.network.protocol.c2s.RoomMessageC2S;
+import labs.network.protocol.s2c.*;
+
+public class BinarySerializer implements Serializer {
+    @Override
+    public byte[] serialize(Message message) {
+        BinaryWriter writer = new BinaryWriter();
+        message.writeBinary(writer);
+        if (message.getRequestId() != 0) {
+            writer.writeVarLong(message.getRequestId());
+        }
+        return writer.toBytes();
+    }
+
+    @Override
+    public Message deserialize(byte[] data) {
+        return deserialize(data, 0, data.length);
+    }
+
+    @Override
+    public Message deserialize(byte[] data, int offset, int length) {
+        BinaryReader reader = new BinaryReader(data, offset, length);
+        Message message = fromTag(reader.readByte(), reader);
+        if (reader.hasRemaining()) {
+            message.setRequestId(reader.readVarLong());
+        }
+        reader.requireEnd();
+        return message;
+    }
+
+    private Message fromTag(int tag, BinaryReader reader) {
+        return switch (tag) {
+            case ConnectC2S.BINARY_TAG -> ConnectC2S.fromBinary(reader);
+            case ListUsersC2S.BINARY_TAG -> ListUsersC2S.fromBinary(reader);
+            case ChatMessageC2S.BINARY_TAG -> ChatMessageC2S.fromBinary(reader);
+            case LogoutC2S.BINARY_TAG -> LogoutC2S.fromBinary(reader);
+            case ResumeC2S.BINARY_TAG -> ResumeC2S.fromBinary(reader);
+            case PingC2S.BINARY_TAG -> PingC2S.fromBinary(reader);
+            case JoinRoomC2S.BINARY_TAG -> JoinRoomC2S.fromBinary(reader);
+            case LeaveRoomC2S.BINARY_TAG -> LeaveRoomC2S.fromBinary(reader);
+            case RoomMessageC2S.BINARY_TAG -> RoomMessageC2S.fromBinary(reader);
+            case ErrorS2C.BINARY_TAG -> ErrorS2C.fromBinary(reader);
+            case EventMessageS2C.BINARY_TAG -> EventMessageS2C.fromBinary(reader);
+            case ListUsersS2C.BINARY_TAG -> ListUsersS2C.fromBinary(reader);
+            case LoginResposeS2C.BINARY_TAG -> LoginResposeS2C.fromBinary(reader);
+            case LogoutResponseS2C.BINARY_TAG -> LogoutResponseS2C.fromBinary(reader);
+            case MessageResponseS2C.BINARY_TAG -> MessageResponseS2C.fromBinary(reader);
+            case UserLoginEventS2C.BINARY_TAG -> UserLoginEventS2C.fromBinary(reader);
+            case UserLogoutEventS2C.BINARY_TAG -> UserLogoutEventS2C.fromBinary(reader);
+            case MissedMessagesS2C.BINARY_TAG -> MissedMessagesS2C.fromBinary(reader);
+            case RoomResponseS2C.BINARY_TAG -> RoomResponseS2C.fromBinary(reader);
+            case RoomMessageEventS2C.BINARY_TAG -> RoomMessageEventS2C.fromBinary(reader);
+            case ReconnectEventS2C.BINARY_TAG -> ReconnectEventS2C.fromBinary(reader);
+            case PongS2C.BINARY_TAG -> PongS2C.fromBinary(reader);
+            default -> throw new SerializationException("Unsupported binary message tag: 0x" + Integer.toHexString(tag));
+        };
+    }
+}
@@ -0,0 +1,139 @@
+package labs.network.protocol;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public final class FrameCompressor {
+    public static final String DEFLATE = "deflate";
+    public static final int COMPRESSED_FLAG = 0x80000000;
+    public static final int LENGTH_MASK = 0x7FFFFFFF;
+
+    private static final int HEADER_SIZE = Integer.BYTES;
+
+    private final int threshold;
+    private final int level;
+    private final Object deflateLock = new Object();
+    private final Object inflateLock = new Object();
+    private final byte[] probe = new byte[1];
+    private Deflater deflater;
+    private Inflater inflater;
+    private volatile boolean closed = false;
+
+    public FrameCompressor(int threshold, int level) {
+        this.threshold = Math.max(HEADER_SIZE + 1, threshold);
+        this.level = level;
+    }
+
+    public static boolean isCompressed(int prefix) {
+        return (prefix & COMPRESSED_FLAG) != 0;
+    }
+
+    public static int length(int prefix) {
+        return prefix & LENGTH_MASK;
+    }
+
+    public static boolean offers(String codecs, String codec) {
+        if (codecs == null || codecs.isBlank()) {
+            return false;
+        }
+        for (String entry : codecs.split(",")) {
+            if (entry.strip().equalsIgnoreCase(codec)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public byte[] compress(byte[] payload) {
+        if (payload.length < threshold) {
+            return null;
+        }
+        byte[] out = new byte[payload.length];
+        out[0] = (byte) (payload.length >>> 24);
+        out[1] = (byte) (payload.length >>> 16);
+        out[2] = (byte) (payload.length >>> 8);
+        out[3] = (byte) payload.length;
+        int size = HEADER_SIZE;
+        synchronized (deflateLock) {
+            if (closed) {
+                return null;
+            }
+            if (deflater == null) {
+                deflater = new Deflater(level, true);
+            } else {
+                deflater.reset();
+            }
+            deflater.setInput(payload);
+            deflater.finish();
+            while (!deflater.finished() && size < out.length) {
+                size += deflater.deflate(out, size, out.length - size);
+            }
+            if (!deflater.finished()) {
+                return null;
+            }
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    public byte[] decompress(byte[] data, int offset, int length, int maxSize) {
+        if (length < HEADER_SIZE) {
+            throw new SerializationException("Compressed frame is too short");
+        }
+        int size = (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+                | (data[offset + 2] & 0xFF) << 8 | data[offset + 3] & 0xFF;
+        if (size < 0 || size > maxSize) {
+            throw new SerializationException("Invalid decompressed length: " + size + " (max " + maxSize + ")");
+        }
+        byte[] out = new byte[size];
+        synchronized (inflateLock) {
+            if (closed) {
+                throw new SerializationException("Frame compressor is closed");
+            }
+            if (inflater == null) {
+                inflater = new Inflater(true);
+            } else {
+                inflater.reset();
+            }
+            inflater.setInput(data, offset + HEADER_SIZE, length - HEADER_SIZE);
+            try {
+                int produced = 0;
+                while (!inflater.finished()) {
+                    int read = produced < size
+                            ? inflater.inflate(out, produced, size - produced)
+                            : inflater.inflate(probe);
+                    if (produced >= size && read > 0) {
+                        throw new SerializationException("Compressed frame is longer than declared " + size + " bytes");
+                    }
+                    if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new SerializationException("Compressed frame is truncated");
+                    }
+                    produced += read;
+                }
+                if (produced != size || inflater.getRemaining() > 0) {
+                    throw new SerializationException("Compressed frame does not match declared length " + size);
+                }
+            } catch (DataFormatException e) {
+                throw new SerializationException("Corrupt compressed frame", e);
+            }
+        }
+        return out;
+    }
+
+    public void close() {
+        closed = true;
+        synchronized (deflateLock) {
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+        }
+        synchronized (inflateLock) {
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package labs.network.protocol;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
 import java.io.Serial;
 import java.io.Serializable;
 
@@ -10,5 +7,19 @@ public abstract class Message implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
-    public abstract Element toXmlElement(Document document);
+    public static final String REQUEST_ID_ATTRIBUTE = "id";
+
+    private long requestId;
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    public abstract void writeXml(XMLWriter writer);
+
+    public abstract void writeBinary(BinaryWriter writer);
 }
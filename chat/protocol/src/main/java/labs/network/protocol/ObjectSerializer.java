@@ -3,10 +3,20 @@ package labs.network.protocol;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputFilter;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 
 public class ObjectSerializer implements Serializer {
+    private static final String ALLOWED_CLASSES = "labs.network.protocol.**;java.util.ArrayList;java.lang.Object;!*";
+    private static final String LIMITS = "maxdepth=16;maxarray=65536;";
+
+    static final ObjectInputFilter FRAME_FILTER =
+            ObjectInputFilter.Config.createFilter(LIMITS + "maxrefs=65536;maxbytes=1048576;" + ALLOWED_CLASSES);
+    // References and bytes are counted over the whole stream, so ObjectStreamSerializer caps them per reset window
+    static final ObjectInputFilter STREAM_FILTER =
+            ObjectInputFilter.Config.createFilter(LIMITS + ALLOWED_CLASSES);
+
     @Override
     public byte[] serialize(Message message) {
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -21,8 +31,14 @@ public class ObjectSerializer implements Serializer {
 
     @Override
     public Message deserialize(byte[] data) {
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(data);
+        return deserialize(data, 0, data.length);
+    }
+
+    @Override
+    public Message deserialize(byte[] data, int offset, int length) {
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(data, offset, length);
              ObjectInputStream ois = new ObjectInputStream(bais)) {
+            ois.setObjectInputFilter(FRAME_FILTER);
             Object value = ois.readObject();
             if (!(value instanceof Message message)) {
                 throw new SerializationException("Deserialized value is not a Message");
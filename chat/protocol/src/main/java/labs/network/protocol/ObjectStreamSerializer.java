@@ -0,0 +1,153 @@
+package labs.network.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamConstants;
+import java.io.ObjectOutputStream;
+
+public class ObjectStreamSerializer implements Serializer {
+    public static final int MAGIC = 0xAB;
+
+    private static final int RESET_FRAMES = 256;
+    private static final int RESET_BYTES = 64 * 1024;
+    private static final long MAX_REFERENCES_SINCE_RESET = 131_072;
+    private static final long MAX_BYTES_SINCE_RESET = 4L * 1024 * 1024;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+    private ObjectOutputStream output;
+    private int framesSinceReset = 0;
+    private long bytesSinceReset = 0;
+
+    private final FrameInputStream frame = new FrameInputStream();
+    private final ResetWindowFilter filter = new ResetWindowFilter();
+    private ObjectInputStream input;
+
+    @Override
+    public boolean isStateful() {
+        return true;
+    }
+
+    @Override
+    public byte[] serialize(Message message) {
+        try {
+            if (output == null) {
+                buffer.write(MAGIC);
+                output = new ObjectOutputStream(buffer);
+            } else if (framesSinceReset >= RESET_FRAMES || bytesSinceReset >= RESET_BYTES) {
+                output.reset();
+                framesSinceReset = 0;
+                bytesSinceReset = 0;
+            }
+            output.writeObject(message);
+            output.flush();
+            byte[] payload = buffer.toByteArray();
+            buffer.reset();
+            framesSinceReset += 1;
+            bytesSinceReset += payload.length;
+            return payload;
+        } catch (IOException e) {
+            throw new SerializationException("Failed to serialize object stream message", e);
+        }
+    }
+
+    @Override
+    public Message deserialize(byte[] data) {
+        return deserialize(data, 0, data.length);
+    }
+
+    @Override
+    public Message deserialize(byte[] data, int offset, int length) {
+        frame.wrap(data, offset, length);
+        try {
+            if (input == null) {
+                if (frame.read() != MAGIC) {
+                    throw new SerializationException("Object stream does not start with the stream magic");
+                }
+                input = new ObjectInputStream(frame);
+                input.setObjectInputFilter(filter);
+            }
+            if (frame.peek() == ObjectStreamConstants.TC_RESET) {
+                filter.startWindow();
+            }
+            Object value = input.readObject();
+            if (frame.available() > 0) {
+                throw new SerializationException("Unexpected " + frame.available() + " bytes after object");
+            }
+            if (!(value instanceof Message message)) {
+                throw new SerializationException("Deserialized value is not a Message");
+            }
+            return message;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new SerializationException("Failed to deserialize object stream message", e);
+        } finally {
+            frame.wrap(null, 0, 0);
+        }
+    }
+
+    // The reader's handle table only shrinks on TC_RESET, so references and bytes are capped per reset window
+    private static final class ResetWindowFilter implements ObjectInputFilter {
+        private long references = 0;
+        private long bytes = 0;
+        private long windowReferences = 0;
+        private long windowBytes = 0;
+
+        void startWindow() {
+            windowReferences = references;
+            windowBytes = bytes;
+        }
+
+        @Override
+        public Status checkInput(FilterInfo info) {
+            references = info.references();
+            bytes = info.streamBytes();
+            if (references - windowReferences > MAX_REFERENCES_SINCE_RESET
+                    || bytes - windowBytes > MAX_BYTES_SINCE_RESET) {
+                return Status.REJECTED;
+            }
+            return ObjectSerializer.STREAM_FILTER.checkInput(info);
+        }
+    }
+
+    private static final class FrameInputStream extends InputStream {
+        private byte[] data;
+        private int position;
+        private int limit;
+
+        void wrap(byte[] data, int offset, int length) {
+            this.data = data;
+            this.position = offset;
+            this.limit = offset + length;
+        }
+
+        int peek() {
+            return position < limit ? data[position] & 0xFF : -1;
+        }
+
+        @Override
+        public int read() {
+            return position < limit ? data[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= limit) {
+                return -1;
+            }
+            int count = Math.min(len, limit - position);
+            System.arraycopy(data, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+    }
+}
@@ -1,7 +1,17 @@
 package labs.network.protocol;
 
+import java.util.Arrays;
+
 public interface Serializer {
     byte[] serialize(Message message);
 
     Message deserialize(byte[] data);
+
+    default boolean isStateful() {
+        return false;
+    }
+
+    default Message deserialize(byte[] data, int offset, int length) {
+        return deserialize(Arrays.copyOfRange(data, offset, offset + length));
+    }
 }
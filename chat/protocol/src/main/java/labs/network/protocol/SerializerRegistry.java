@@ -0,0 +1,91 @@
+package labs.network.protocol;
+
+import labs.network.protocol.c2s.ConnectC2S;
+import labs.network.protocol.c2s.ResumeC2S;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+public final class SerializerRegistry {
+    public static final String XML = "xml";
+    public static final String BINARY = "binary";
+    public static final String OBJECT = "object";
+    public static final String OBJECT_STREAM = "object-stream";
+
+    private static final int OBJECT_STREAM_MAGIC = 0xAC;
+    private static final int UTF8_BOM = 0xEF;
+
+    private final Map<String, Supplier<? extends Serializer>> byName = new LinkedHashMap<>();
+    @SuppressWarnings("unchecked")
+    private final Supplier<? extends Serializer>[] byFirstByte =
+            (Supplier<? extends Serializer>[]) new Supplier<?>[256];
+
+    public static SerializerRegistry defaults() {
+        SerializerRegistry registry = new SerializerRegistry();
+        XMLSerializer xml = new XMLSerializer();
+        registry.register(XML, () -> xml, '<', ' ', '\t', '\r', '\n', UTF8_BOM);
+        BinarySerializer binary = new BinarySerializer();
+        registry.register(BINARY, () -> binary, ConnectC2S.BINARY_TAG, ResumeC2S.BINARY_TAG);
+        ObjectSerializer object = new ObjectSerializer();
+        registry.register(OBJECT, () -> object, OBJECT_STREAM_MAGIC);
+        registry.register(OBJECT_STREAM, ObjectStreamSerializer::new, ObjectStreamSerializer.MAGIC);
+        return registry;
+    }
+
+    public SerializerRegistry register(String name, Supplier<? extends Serializer> factory, int... firstBytes) {
+        for (int firstByte : firstBytes) {
+            Supplier<? extends Serializer> existing = byFirstByte[firstByte & 0xFF];
+            if (existing != null && existing != byName.get(name)) {
+                throw new IllegalArgumentException("First byte 0x" + Integer.toHexString(firstByte & 0xFF)
+                        + " is already taken by another serializer");
+            }
+        }
+        Supplier<? extends Serializer> previous = byName.put(name, factory);
+        for (int i = 0; i < byFirstByte.length; i++) {
+            if (previous != null && byFirstByte[i] == previous) {
+                byFirstByte[i] = null;
+            }
+        }
+        for (int firstByte : firstBytes) {
+            byFirstByte[firstByte & 0xFF] = factory;
+        }
+        return this;
+    }
+
+    public SerializerRegistry retain(Collection<String> names) {
+        for (String name : Set.copyOf(byName.keySet())) {
+            if (!names.contains(name)) {
+                Supplier<? extends Serializer> removed = byName.remove(name);
+                for (int i = 0; i < byFirstByte.length; i++) {
+                    if (byFirstByte[i] == removed) {
+                        byFirstByte[i] = null;
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    public Set<String> names() {
+        return byName.keySet();
+    }
+
+    public Serializer create(String name) {
+        Supplier<? extends Serializer> factory = byName.get(name);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown serializer: " + name);
+        }
+        return factory.get();
+    }
+
+    public Serializer detect(byte[] data, int offset, int length) {
+        if (length <= 0) {
+            return null;
+        }
+        Supplier<? extends Serializer> factory = byFirstByte[data[offset] & 0xFF];
+        return factory != null ? factory.get() : null;
+    }
+}
@@ -0,0 +1,45 @@
+package labs.network.protocol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class XMLElement {
+    private final String tagName;
+    private final Map<String, String> attributes = new HashMap<>(2);
+    private final List<XMLElement> children = new ArrayList<>(4);
+    private final StringBuilder text = new StringBuilder();
+
+    public XMLElement(String tagName) {
+        this.tagName = tagName;
+    }
+
+    public String getTagName() {
+        return tagName;
+    }
+
+    public String getAttribute(String name) {
+        return attributes.getOrDefault(name, "");
+    }
+
+    public List<XMLElement> getChildren() {
+        return children;
+    }
+
+    public String getTextContent() {
+        return text.toString();
+    }
+
+    void setAttribute(String name, String value) {
+        attributes.put(name, value);
+    }
+
+    void addChild(XMLElement child) {
+        children.add(child);
+    }
+
+    void appendText(String value) {
+        text.append(value);
+    }
+}
@@ -2,55 +2,129 @@ package labs.network.protocol;
 
 import labs.network.protocol.c2s.ChatMessageC2S;
 import labs.network.protocol.c2s.ConnectC2S;
+import labs.network.protocol.c2s.JoinRoomC2S;
+import labs.network.protocol.c2s.LeaveRoomC2S;
 import labs.network.protocol.c2s.ListUsersC2S;
 import labs.network.protocol.c2s.LogoutC2S;
+import labs.network.protocol.c2s.PingC2S;
+import labs.network.protocol.c2s.ResumeC2S;
+import labs.network.protocol.c2s.RoomMessageC2S;
 import labs.network.protocol.s2c.*;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class XMLSerializer implements Serializer {
+    // Shared across all connections rather than per thread: connections run on virtual threads,
+    // so a thread-local cache would pin one writer and factory per connection.
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final BlockingQueue<XMLInputFactory> INPUT_FACTORIES = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final BlockingQueue<XMLWriter> WRITERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
     @Override
     public byte[] serialize(Message message) {
+        XMLWriter writer = WRITERS.poll();
+        if (writer == null) {
+            writer = new XMLWriter();
+        }
         try {
-            Document document = newDocument();
-            Element root = message.toXmlElement(document);
-            document.appendChild(root);
-            return toBytes(document);
+            if (message.getRequestId() != 0) {
+                writer.rootAttribute(Message.REQUEST_ID_ATTRIBUTE, Long.toString(message.getRequestId()));
+            }
+            message.writeXml(writer);
+            return writer.toBytes();
+        } catch (SerializationException e) {
+            throw e;
         } catch (Exception e) {
             throw new SerializationException("Failed to serialize XML message", e);
+        } finally {
+            WRITERS.offer(writer.reset());
         }
     }
 
     @Override
     public Message deserialize(byte[] data) {
+        return deserialize(data, 0, data.length);
+    }
+
+    @Override
+    public Message deserialize(byte[] data, int offset, int length) {
+        XMLInputFactory factory = INPUT_FACTORIES.poll();
+        if (factory == null) {
+            factory = newInputFactory();
+        }
+        XMLStreamReader reader = null;
         try {
-            DocumentBuilder builder = newDocumentBuilder();
-            Document document = builder.parse(new ByteArrayInputStream(data));
-            Element root = document.getDocumentElement();
+            reader = factory.createXMLStreamReader(new ByteArrayInputStream(data, offset, length));
+            XMLElement root = readRoot(reader);
             if (root == null) {
                 throw new SerializationException("XML document has no root element");
             }
-            return fromElement(root);
+            Message message = fromElement(root);
+            message.setRequestId(XMLUtils.parseRequestId(root.getAttribute(Message.REQUEST_ID_ATTRIBUTE)));
+            return message;
         } catch (SerializationException e) {
             throw e;
         } catch (Exception e) {
             throw new SerializationException("Failed to deserialize XML message", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+            INPUT_FACTORIES.offer(factory);
         }
     }
 
-    private Message fromElement(Element root) {
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    private XMLElement readRoot(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                XMLElement root = readElement(reader);
+                while (reader.hasNext()) {
+                    reader.next();
+                }
+                return root;
+            }
+        }
+        return null;
+    }
+
+    private XMLElement readElement(XMLStreamReader reader) throws XMLStreamException {
+        XMLElement element = new XMLElement(reader.getLocalName());
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> element.addChild(readElement(reader));
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE ->
+                        element.appendText(reader.getText());
+                case XMLStreamConstants.END_ELEMENT -> {
+                    return element;
+                }
+                default -> {
+                }
+            }
+        }
+        throw new SerializationException("Unexpected end of XML document in element: " + element.getTagName());
+    }
+
+    private Message fromElement(XMLElement root) {
         String tag = root.getTagName();
         if ("command".equals(tag)) {
             String name = root.getAttribute("name");
@@ -60,19 +134,25 @@ public class XMLSerializer implements Serializer {
             return ErrorS2C.fromXml(root);
         }
         if ("success".equals(tag)) {
-            Element listUsers = XMLUtils.findChild(root, "listusers");
+            XMLElement listUsers = XMLUtils.findChild(root, "listusers");
             if (listUsers != null) {
                 return ListUsersS2C.fromXml(root);
             }
-            Element session = XMLUtils.findChild(root, "session");
+            XMLElement session = XMLUtils.findChild(root, "session");
             if (session != null) {
                 return LoginResposeS2C.fromXml(root);
             }
 
             String response = root.getAttribute("response");
+            if ("join".equals(response) || "leave".equals(response)) {
+                return RoomResponseS2C.fromXml(root);
+            }
             if ("logout".equals(response)) {
                 return LogoutResponseS2C.fromXml(root);
             }
+            if ("pong".equals(response)) {
+                return PongS2C.fromXml(root);
+            }
             if ("message".equals(response) || response.isEmpty()) {
                 return MessageResponseS2C.fromXml(root);
             }
@@ -86,7 +166,7 @@ public class XMLSerializer implements Serializer {
         throw new SerializationException("Unsupported XML root tag: " + tag);
     }
 
-    private Message parseCommand(Element command, String name) {
+    private Message parseCommand(XMLElement command, String name) {
         if ("login".equals(name)) {
             return ConnectC2S.fromXml(command);
         }
@@ -99,10 +179,25 @@ public class XMLSerializer implements Serializer {
         if ("logout".equals(name)) {
             return LogoutC2S.fromXml(command);
         }
+        if ("resume".equals(name)) {
+            return ResumeC2S.fromXml(command);
+        }
+        if ("ping".equals(name)) {
+            return PingC2S.fromXml(command);
+        }
+        if ("join".equals(name)) {
+            return JoinRoomC2S.fromXml(command);
+        }
+        if ("leave".equals(name)) {
+            return LeaveRoomC2S.fromXml(command);
+        }
+        if ("roommessage".equals(name)) {
+            return RoomMessageC2S.fromXml(command);
+        }
         throw new SerializationException("Unsupported command name: " + name);
     }
 
-    private Message parseEvent(Element event, String name) {
+    private Message parseEvent(XMLElement event, String name) {
         if ("message".equals(name)) {
             return EventMessageS2C.fromXml(event);
         }
@@ -112,28 +207,15 @@ public class XMLSerializer implements Serializer {
         if ("userlogout".equals(name)) {
             return UserLogoutEventS2C.fromXml(event);
         }
+        if ("missed".equals(name)) {
+            return MissedMessagesS2C.fromXml(event);
+        }
+        if ("roommessage".equals(name)) {
+            return RoomMessageEventS2C.fromXml(event);
+        }
+        if ("reconnect".equals(name)) {
+            return ReconnectEventS2C.fromXml(event);
+        }
         throw new SerializationException("Unsupported event name: " + name);
     }
-
-    private Document newDocument() throws Exception {
-        return newDocumentBuilder().newDocument();
-    }
-
-    private DocumentBuilder newDocumentBuilder() throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-        factory.setExpandEntityReferences(false);
-        return factory.newDocumentBuilder();
-    }
-
-    private byte[] toBytes(Document document) throws Exception {
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        transformerFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-        Transformer transformer = transformerFactory.newTransformer();
-        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-        transformer.setOutputProperty(OutputKeys.ENCODING, StandardCharsets.UTF_8.name());
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        transformer.transform(new DOMSource(document), new StreamResult(output));
-        return output.toByteArray();
-    }
 }
@@ -1,52 +1,42 @@
 package labs.network.protocol;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 public final class XMLUtils {
     private XMLUtils() {
     }
 
-    public static void appendTextElement(Document document, Element parent, String name, String value) {
-        Element element = document.createElement(name);
-        element.setTextContent(value);
-        parent.appendChild(element);
-    }
-
-    public static String getContent(Element parent, String childTag) {
-        Element child = findChild(parent, childTag);
+    public static String getContent(XMLElement parent, String childTag) {
+        XMLElement child = findChild(parent, childTag);
         if (child == null) {
             throw new SerializationException("Missing element: " + childTag);
         }
-        String text = child.getTextContent();
-        if (text == null) {
-            throw new SerializationException("Empty element: " + childTag);
-        }
-        return text;
+        return child.getTextContent();
     }
 
-    public static String getOrDefault(Element parent, String childTag, String def) {
-        Element child = findChild(parent, childTag);
+    public static String getOrDefault(XMLElement parent, String childTag, String def) {
+        XMLElement child = findChild(parent, childTag);
         if (child == null) {
             return def;
         }
-        String text = child.getTextContent();
-        if (text == null) {
-            return def;
-        }
-        return text;
+        return child.getTextContent();
     }
 
-    public static Element findChild(Element parent, String tagName) {
-        NodeList children = parent.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node node = children.item(i);
-            if (node instanceof Element element && tagName.equals(element.getTagName())) {
-                return element;
+    public static XMLElement findChild(XMLElement parent, String tagName) {
+        for (XMLElement child : parent.getChildren()) {
+            if (tagName.equals(child.getTagName())) {
+                return child;
             }
         }
         return null;
     }
+
+    public static long parseRequestId(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.strip());
+        } catch (NumberFormatException e) {
+            throw new SerializationException("Invalid request id: " + value, e);
+        }
+    }
 }
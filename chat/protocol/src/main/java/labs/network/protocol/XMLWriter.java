@@ -0,0 +1,199 @@
+package labs.network.protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class XMLWriter {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private byte[] out = new byte[INITIAL_CAPACITY];
+    private int size = 0;
+    private final List<String> openElements = new ArrayList<>();
+    private boolean startTagOpen = false;
+    private String rootAttributeName;
+    private String rootAttributeValue;
+
+    public XMLWriter reset() {
+        if (out.length > MAX_RETAINED_CAPACITY) {
+            out = new byte[INITIAL_CAPACITY];
+        }
+        size = 0;
+        openElements.clear();
+        startTagOpen = false;
+        rootAttributeName = null;
+        rootAttributeValue = null;
+        return this;
+    }
+
+    public XMLWriter rootAttribute(String name, String value) {
+        if (!openElements.isEmpty() || size > 0) {
+            throw new SerializationException("Root attribute after the root element: " + name);
+        }
+        rootAttributeName = name;
+        rootAttributeValue = value;
+        return this;
+    }
+
+    public XMLWriter startElement(String name) {
+        closeStartTag();
+        append('<');
+        append(name);
+        openElements.add(name);
+        startTagOpen = true;
+        if (rootAttributeName != null) {
+            attribute(rootAttributeName, rootAttributeValue);
+            rootAttributeName = null;
+            rootAttributeValue = null;
+        }
+        return this;
+    }
+
+    public XMLWriter attribute(String name, String value) {
+        if (!startTagOpen) {
+            throw new SerializationException("Attribute outside of start tag: " + name);
+        }
+        append(' ');
+        append(name);
+        append('=');
+        append('"');
+        escape(value, true);
+        append('"');
+        return this;
+    }
+
+    public XMLWriter text(String value) {
+        if (value == null || value.isEmpty()) {
+            return this;
+        }
+        closeStartTag();
+        escape(value, false);
+        return this;
+    }
+
+    public XMLWriter textElement(String name, String value) {
+        return startElement(name).text(value).endElement();
+    }
+
+    public XMLWriter endElement() {
+        String name = openElements.removeLast();
+        if (startTagOpen) {
+            append('/');
+            append('>');
+            startTagOpen = false;
+        } else {
+            append('<');
+            append('/');
+            append(name);
+            append('>');
+        }
+        return this;
+    }
+
+    public byte[] toBytes() {
+        if (!openElements.isEmpty()) {
+            throw new SerializationException("Unclosed element: " + openElements.getLast());
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    private void closeStartTag() {
+        if (startTagOpen) {
+            append('>');
+            startTagOpen = false;
+        }
+    }
+
+    public static boolean canEncode(String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 && c != '\t' && c != '\n' && c != '\r' || c == 0xFFFE || c == 0xFFFF) {
+                return false;
+            }
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                i += 1;
+            } else if (Character.isSurrogate(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Mirrors the escaping of the JDK Transformer so the wire bytes stay identical to the DOM output
+    private void escape(String value, boolean attribute) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<' -> append("&lt;");
+                case '>' -> append("&gt;");
+                case '&' -> append("&amp;");
+                case '\r' -> append("&#13;");
+                case '"' -> append(attribute ? "&quot;" : "\"");
+                case '\n' -> append(attribute ? "&#10;" : "\n");
+                case '\t' -> append(attribute ? "&#9;" : "\t");
+                default -> {
+                    if (c < 0x20) {
+                        throw invalidCharacter(c);
+                    } else if (c >= 0x7F && c <= 0x9F) {
+                        appendCharacterReference(c);
+                    } else if (Character.isHighSurrogate(c)) {
+                        if (i + 1 >= length || !Character.isLowSurrogate(value.charAt(i + 1))) {
+                            throw invalidCharacter(c);
+                        }
+                        appendCharacterReference(Character.toCodePoint(c, value.charAt(i + 1)));
+                        i += 1;
+                    } else if (Character.isLowSurrogate(c)) {
+                        throw invalidCharacter(c);
+                    } else {
+                        append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    private void appendCharacterReference(int codePoint) {
+        append('&');
+        append('#');
+        append(Integer.toString(codePoint));
+        append(';');
+    }
+
+    private void append(String value) {
+        int length = value.length();
+        ensureCapacity(length * 3);
+        for (int i = 0; i < length; i++) {
+            append(value.charAt(i));
+        }
+    }
+
+    // Surrogates never get here: escape() turns them into character references
+    private void append(char c) {
+        if (c < 0x80) {
+            ensureCapacity(1);
+            out[size++] = (byte) c;
+        } else if (c < 0x800) {
+            ensureCapacity(2);
+            out[size++] = (byte) (0xC0 | c >> 6);
+            out[size++] = (byte) (0x80 | c & 0x3F);
+        } else {
+            ensureCapacity(3);
+            out[size++] = (byte) (0xE0 | c >> 12);
+            out[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+            out[size++] = (byte) (0x80 | c & 0x3F);
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > out.length) {
+            out = Arrays.copyOf(out, Math.max(out.length * 2, size + extra));
+        }
+    }
+
+    private static SerializationException invalidCharacter(char c) {
+        return new SerializationException("Invalid XML character: 0x" + Integer.toHexString(c));
+    }
+}
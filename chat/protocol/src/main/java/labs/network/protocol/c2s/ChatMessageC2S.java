@@ -1,9 +1,11 @@
 package labs.network.protocol.c2s;
 
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
 import labs.network.protocol.Message;
+import labs.network.protocol.XMLElement;
 import labs.network.protocol.XMLUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import labs.network.protocol.XMLWriter;
 
 import java.io.Serial;
 
@@ -11,6 +13,8 @@ public class ChatMessageC2S extends Message {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    public static final int BINARY_TAG = 0x03;
+
     private final String message;
     private final String session;
 
@@ -28,18 +32,28 @@ public class ChatMessageC2S extends Message {
     }
 
     @Override
-    public Element toXmlElement(Document document) {
-        Element command = document.createElement("command");
-        command.setAttribute("name", "message");
-        XMLUtils.appendTextElement(document, command, "message", message);
-        XMLUtils.appendTextElement(document, command, "session", session);
-        return command;
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("command").attribute("name", "message")
+                .textElement("message", message)
+                .textElement("session", session)
+                .endElement();
     }
 
-    public static ChatMessageC2S fromXml(Element command) {
+    public static ChatMessageC2S fromXml(XMLElement command) {
         return new ChatMessageC2S(
                 XMLUtils.getContent(command, "message"),
                 XMLUtils.getContent(command, "session")
         );
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG)
+                .writeString(message)
+                .writeString(session);
+    }
+
+    public static ChatMessageC2S fromBinary(BinaryReader reader) {
+        return new ChatMessageC2S(reader.readString(), reader.readString());
+    }
 }
@@ -1,9 +1,11 @@
 package labs.network.protocol.c2s;
 
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
 import labs.network.protocol.Message;
+import labs.network.protocol.XMLElement;
 import labs.network.protocol.XMLUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import labs.network.protocol.XMLWriter;
 
 import java.io.Serial;
 
@@ -11,14 +13,22 @@ public class ConnectC2S extends Message {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    public static final int BINARY_TAG = 0x01;
+
     private final String name;
     private final String clientType;
     private final String password;
+    private final String compression;
 
     public ConnectC2S(String name, String clientType, String password) {
+        this(name, clientType, password, "");
+    }
+
+    public ConnectC2S(String name, String clientType, String password, String compression) {
         this.name = name;
         this.clientType = clientType;
         this.password = password;
+        this.compression = compression;
     }
 
     public String getName() {
@@ -33,21 +43,41 @@ public class ConnectC2S extends Message {
         return password;
     }
 
+    public String getCompression() {
+        return compression;
+    }
+
     @Override
-    public Element toXmlElement(Document document) {
-        Element command = document.createElement("command");
-        command.setAttribute("name", "login");
-        XMLUtils.appendTextElement(document, command, "name", name);
-        XMLUtils.appendTextElement(document, command, "type", clientType);
-        XMLUtils.appendTextElement(document, command, "password", password);
-        return command;
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("command").attribute("name", "login")
+                .textElement("name", name)
+                .textElement("type", clientType)
+                .textElement("password", password);
+        if (!compression.isEmpty()) {
+            writer.textElement("compression", compression);
+        }
+        writer.endElement();
     }
 
-    public static ConnectC2S fromXml(Element command) {
+    public static ConnectC2S fromXml(XMLElement command) {
         return new ConnectC2S(
                 XMLUtils.getContent(command, "name"),
                 XMLUtils.getContent(command, "type"),
-                XMLUtils.getOrDefault(command, "password", "")
+                XMLUtils.getOrDefault(command, "password", ""),
+                XMLUtils.getOrDefault(command, "compression", "")
         );
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG)
+                .writeString(name)
+                .writeString(clientType)
+                .writeString(password)
+                .writeString(compression);
+    }
+
+    public static ConnectC2S fromBinary(BinaryReader reader) {
+        return new ConnectC2S(reader.readString(), reader.readString(), reader.readString(), reader.readString());
+    }
 }
@@ -0,0 +1,59 @@
+package labs.network.protocol.c2s;
+
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
+import labs.network.protocol.Message;
+import labs.network.protocol.XMLElement;
+import labs.network.protocol.XMLUtils;
+import labs.network.protocol.XMLWriter;
+
+import java.io.Serial;
+
+public class JoinRoomC2S extends Message {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final int BINARY_TAG = 0x05;
+
+    private final String room;
+    private final String session;
+
+    public JoinRoomC2S(String room, String session) {
+        this.room = room;
+        this.session = session;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public String getSession() {
+        return session;
+    }
+
+    @Override
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("command").attribute("name", "join")
+                .textElement("room", room)
+                .textElement("session", session)
+                .endElement();
+    }
+
+    public static JoinRoomC2S fromXml(XMLElement command) {
+        return new JoinRoomC2S(
+                XMLUtils.getContent(command, "room"),
+                XMLUtils.getContent(command, "session")
+        );
+    }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG)
+                .writeString(room)
+                .writeString(session);
+    }
+
+    public static JoinRoomC2S fromBinary(BinaryReader reader) {
+        return new JoinRoomC2S(reader.readString(), reader.readString());
+    }
+}
@@ -1,9 +1,12 @@
 package labs.network.protocol.c2s;
 
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
 import labs.network.protocol.Message;
+import labs.network.protocol.SerializationException;
+import labs.network.protocol.XMLElement;
 import labs.network.protocol.XMLUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import labs.network.protocol.XMLWriter;
 
 import java.io.Serial;
 
@@ -11,25 +14,83 @@ public class ListUsersC2S extends Message {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    public static final int BINARY_TAG = 0x02;
+
     private final String session;
+    private final long since;
+    private final String after;
+    private final int limit;
 
     public ListUsersC2S(String session) {
+        this(session, -1, null, 0);
+    }
+
+    public ListUsersC2S(String session, long since, String after, int limit) {
         this.session = session;
+        this.since = since;
+        this.after = after != null && !after.isEmpty() ? after : null;
+        this.limit = limit;
     }
 
     public String getSession() {
         return session;
     }
 
+    public long getSince() {
+        return since;
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("command").attribute("name", "list")
+                .textElement("session", session);
+        if (since >= 0) {
+            writer.textElement("since", Long.toString(since));
+        }
+        if (after != null) {
+            writer.textElement("after", after);
+        }
+        if (limit > 0) {
+            writer.textElement("limit", Integer.toString(limit));
+        }
+        writer.endElement();
+    }
+
+    public static ListUsersC2S fromXml(XMLElement command) {
+        return new ListUsersC2S(
+                XMLUtils.getContent(command, "session"),
+                parseNumber(XMLUtils.getOrDefault(command, "since", "-1")),
+                XMLUtils.getOrDefault(command, "after", null),
+                (int) parseNumber(XMLUtils.getOrDefault(command, "limit", "0"))
+        );
+    }
+
     @Override
-    public Element toXmlElement(Document document) {
-        Element command = document.createElement("command");
-        command.setAttribute("name", "list");
-        XMLUtils.appendTextElement(document, command, "session", session);
-        return command;
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG)
+                .writeString(session)
+                .writeVarLong(since + 1)
+                .writeString(after != null ? after : "")
+                .writeVarInt(limit);
+    }
+
+    public static ListUsersC2S fromBinary(BinaryReader reader) {
+        return new ListUsersC2S(reader.readString(), reader.readVarLong() - 1, reader.readString(), reader.readVarInt());
     }
 
-    public static ListUsersC2S fromXml(Element command) {
-        return new ListUsersC2S(XMLUtils.getContent(command, "session"));
+    private static long parseNumber(String value) {
+        try {
+            return Long.parseLong(value.strip());
+        } catch (NumberFormatException e) {
+            throw new SerializationException("Invalid number: " + value, e);
+        }
     }
 }
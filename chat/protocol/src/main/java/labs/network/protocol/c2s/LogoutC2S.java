@@ -1,9 +1,11 @@
 package labs.network.protocol.c2s;
 
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
 import labs.network.protocol.Message;
+import labs.network.protocol.XMLElement;
 import labs.network.protocol.XMLUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import labs.network.protocol.XMLWriter;
 
 import java.io.Serial;
 
@@ -11,6 +13,8 @@ public class LogoutC2S extends Message {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    public static final int BINARY_TAG = 0x04;
+
     private final String session;
 
     public LogoutC2S(String session) {
@@ -22,14 +26,22 @@ public class LogoutC2S extends Message {
     }
 
     @Override
-    public Element toXmlElement(Document document) {
-        Element command = document.createElement("command");
-        command.setAttribute("name", "logout");
-        XMLUtils.appendTextElement(document, command, "session", session);
-        return command;
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("command").attribute("name", "logout")
+                .textElement("session", session)
+                .endElement();
     }
 
-    public static LogoutC2S fromXml(Element command) {
+    public static LogoutC2S fromXml(XMLElement command) {
         return new LogoutC2S(XMLUtils.getContent(command, "session"));
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG).writeString(session);
+    }
+
+    public static LogoutC2S fromBinary(BinaryReader reader) {
+        return new LogoutC2S(reader.readString());
+    }
 }
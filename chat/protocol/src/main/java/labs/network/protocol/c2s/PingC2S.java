@@ -0,0 +1,56 @@
+package labs.network.protocol.c2s;
+
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
+import labs.network.protocol.Message;
+import labs.network.protocol.SerializationException;
+import labs.network.protocol.XMLElement;
+import labs.network.protocol.XMLUtils;
+import labs.network.protocol.XMLWriter;
+
+import java.io.Serial;
+
+public class PingC2S extends Message {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final int BINARY_TAG = 0x09;
+
+    private final long timestamp;
+
+    public PingC2S(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("command").attribute("name", "ping")
+                .textElement("time", Long.toString(timestamp))
+                .endElement();
+    }
+
+    public static PingC2S fromXml(XMLElement command) {
+        return new PingC2S(parseTimestamp(XMLUtils.getOrDefault(command, "time", "0")));
+    }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG).writeVarLong(timestamp);
+    }
+
+    public static PingC2S fromBinary(BinaryReader reader) {
+        return new PingC2S(reader.readVarLong());
+    }
+
+    private static long parseTimestamp(String value) {
+        try {
+            return Long.parseLong(value.strip());
+        } catch (NumberFormatException e) {
+            throw new SerializationException("Invalid ping time: " + value, e);
+        }
+    }
+}
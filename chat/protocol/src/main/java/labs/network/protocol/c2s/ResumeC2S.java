@@ -0,0 +1,83 @@
+package labs.network.protocol.c2s;
+
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
+import labs.network.protocol.Message;
+import labs.network.protocol.SerializationException;
+import labs.network.protocol.XMLElement;
+import labs.network.protocol.XMLUtils;
+import labs.network.protocol.XMLWriter;
+
+import java.io.Serial;
+
+public class ResumeC2S extends Message {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final int BINARY_TAG = 0x08;
+
+    private final String session;
+    private final int lastMessage;
+    private final String compression;
+
+    public ResumeC2S(String session, int lastMessage) {
+        this(session, lastMessage, "");
+    }
+
+    public ResumeC2S(String session, int lastMessage, String compression) {
+        this.session = session;
+        this.lastMessage = lastMessage;
+        this.compression = compression;
+    }
+
+    public String getSession() {
+        return session;
+    }
+
+    public int getLastMessage() {
+        return lastMessage;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    @Override
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("command").attribute("name", "resume")
+                .textElement("session", session)
+                .textElement("lastmessage", Integer.toString(lastMessage));
+        if (!compression.isEmpty()) {
+            writer.textElement("compression", compression);
+        }
+        writer.endElement();
+    }
+
+    public static ResumeC2S fromXml(XMLElement command) {
+        return new ResumeC2S(
+                XMLUtils.getContent(command, "session"),
+                parseIndex(XMLUtils.getOrDefault(command, "lastmessage", "-1")),
+                XMLUtils.getOrDefault(command, "compression", "")
+        );
+    }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG)
+                .writeString(session)
+                .writeVarInt(lastMessage + 1)
+                .writeString(compression);
+    }
+
+    public static ResumeC2S fromBinary(BinaryReader reader) {
+        return new ResumeC2S(reader.readString(), reader.readVarInt() - 1, reader.readString());
+    }
+
+    private static int parseIndex(String value) {
+        try {
+            return Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            throw new SerializationException("Invalid message index: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package labs.network.protocol.c2s;
+
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
+import labs.network.protocol.Message;
+import labs.network.protocol.XMLElement;
+import labs.network.protocol.XMLUtils;
+import labs.network.protocol.XMLWriter;
+
+import java.io.Serial;
+
+public class RoomMessageC2S extends Message {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final int BINARY_TAG = 0x07;
+
+    private final String room;
+    private final String message;
+    private final String session;
+
+    public RoomMessageC2S(String room, String message, String session) {
+        this.room = room;
+        this.message = message;
+        this.session = session;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getSession() {
+        return session;
+    }
+
+    @Override
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("command").attribute("name", "roommessage")
+                .textElement("room", room)
+                .textElement("message", message)
+                .textElement("session", session)
+                .endElement();
+    }
+
+    public static RoomMessageC2S fromXml(XMLElement command) {
+        return new RoomMessageC2S(
+                XMLUtils.getContent(command, "room"),
+                XMLUtils.getContent(command, "message"),
+                XMLUtils.getContent(command, "session")
+        );
+    }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG)
+                .writeString(room)
+                .writeString(message)
+                .writeString(session);
+    }
+
+    public static RoomMessageC2S fromBinary(BinaryReader reader) {
+        return new RoomMessageC2S(reader.readString(), reader.readString(), reader.readString());
+    }
+}
@@ -1,9 +1,11 @@
 package labs.network.protocol.s2c;
 
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
 import labs.network.protocol.Message;
+import labs.network.protocol.XMLElement;
 import labs.network.protocol.XMLUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import labs.network.protocol.XMLWriter;
 
 import java.io.Serial;
 
@@ -11,6 +13,8 @@ public class ErrorS2C extends Message {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    public static final int BINARY_TAG = 0x41;
+
     private final String message;
 
     public ErrorS2C(String message) {
@@ -22,13 +26,22 @@ public class ErrorS2C extends Message {
     }
 
     @Override
-    public Element toXmlElement(Document document) {
-        Element error = document.createElement("error");
-        XMLUtils.appendTextElement(document, error, "message", message);
-        return error;
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("error")
+                .textElement("message", message)
+                .endElement();
     }
 
-    public static ErrorS2C fromXml(Element error) {
+    public static ErrorS2C fromXml(XMLElement error) {
         return new ErrorS2C(XMLUtils.getContent(error, "message"));
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG).writeString(message);
+    }
+
+    public static ErrorS2C fromBinary(BinaryReader reader) {
+        return new ErrorS2C(reader.readString());
+    }
 }
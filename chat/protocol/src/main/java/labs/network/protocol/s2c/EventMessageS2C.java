@@ -1,9 +1,12 @@
 package labs.network.protocol.s2c;
 
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
 import labs.network.protocol.Message;
+import labs.network.protocol.SerializationException;
+import labs.network.protocol.XMLElement;
 import labs.network.protocol.XMLUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import labs.network.protocol.XMLWriter;
 
 import java.io.Serial;
 
@@ -11,12 +14,20 @@ public class EventMessageS2C extends Message {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    public static final int BINARY_TAG = 0x42;
+
     private final String message;
     private final String fromName;
+    private final int index;
 
     public EventMessageS2C(String message, String fromName) {
+        this(message, fromName, -1);
+    }
+
+    public EventMessageS2C(String message, String fromName, int index) {
         this.message = message;
         this.fromName = fromName;
+        this.index = index;
     }
 
     public String getMessage() {
@@ -27,19 +38,46 @@ public class EventMessageS2C extends Message {
         return fromName;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     @Override
-    public Element toXmlElement(Document document) {
-        Element event = document.createElement("event");
-        event.setAttribute("name", "message");
-        XMLUtils.appendTextElement(document, event, "message", message);
-        XMLUtils.appendTextElement(document, event, "name", fromName);
-        return event;
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("event").attribute("name", "message")
+                .textElement("message", message)
+                .textElement("name", fromName);
+        if (index >= 0) {
+            writer.textElement("index", Integer.toString(index));
+        }
+        writer.endElement();
     }
 
-    public static EventMessageS2C fromXml(Element event) {
+    public static EventMessageS2C fromXml(XMLElement event) {
         return new EventMessageS2C(
                 XMLUtils.getContent(event, "message"),
-                XMLUtils.getContent(event, "name")
+                XMLUtils.getContent(event, "name"),
+                parseIndex(XMLUtils.getOrDefault(event, "index", "-1"))
         );
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG)
+                .writeString(message)
+                .writeString(fromName)
+                .writeVarInt(index + 1);
+    }
+
+    public static EventMessageS2C fromBinary(BinaryReader reader) {
+        return new EventMessageS2C(reader.readString(), reader.readString(), reader.readVarInt() - 1);
+    }
+
+    private static int parseIndex(String value) {
+        try {
+            return Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            throw new SerializationException("Invalid message index: " + value, e);
+        }
+    }
 }
@@ -1,10 +1,6 @@
 package labs.network.protocol.s2c;
 
 import labs.network.protocol.*;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import java.io.Serial;
 import java.util.ArrayList;
@@ -14,47 +10,136 @@ public class ListUsersS2C extends Message {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    public static final int BINARY_TAG = 0x43;
+
     private final List<UserInfo> users;
+    private final List<String> removed;
+    private final long version;
+    private final String next;
+    private final boolean delta;
 
     public ListUsersS2C(List<UserInfo> users) {
+        this(users, List.of(), -1, null, false);
+    }
+
+    public ListUsersS2C(List<UserInfo> users, List<String> removed, long version, String next, boolean delta) {
         this.users = new ArrayList<>(users);
+        this.removed = new ArrayList<>(removed);
+        this.version = version;
+        this.next = next != null && !next.isEmpty() ? next : null;
+        this.delta = delta;
     }
 
     public List<UserInfo> getUsers() {
         return users;
     }
 
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public boolean isDelta() {
+        return delta;
+    }
+
     @Override
-    public Element toXmlElement(Document document) {
-        Element success = document.createElement("success");
-        Element listUsers = document.createElement("listusers");
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("success").startElement("listusers");
+        if (delta) {
+            writer.attribute("delta", "true");
+        }
+        if (next != null) {
+            writer.attribute("next", next);
+        }
+        if (version >= 0) {
+            writer.attribute("version", Long.toString(version));
+        }
         for (UserInfo user : users) {
-            Element userElement = document.createElement("user");
-            XMLUtils.appendTextElement(document, userElement, "name", user.name());
-            XMLUtils.appendTextElement(document, userElement, "type", user.clientType());
-            listUsers.appendChild(userElement);
+            writer.startElement("user")
+                    .textElement("name", user.name())
+                    .textElement("type", user.clientType())
+                    .endElement();
         }
-        success.appendChild(listUsers);
-        return success;
+        for (String name : removed) {
+            writer.textElement("removed", name);
+        }
+        writer.endElement().endElement();
     }
 
-    public static ListUsersS2C fromXml(Element success) {
-        Element listUsers = XMLUtils.findChild(success, "listusers");
+    public static ListUsersS2C fromXml(XMLElement success) {
+        XMLElement listUsers = XMLUtils.findChild(success, "listusers");
         if (listUsers == null) {
             throw new SerializationException("Missing element: listusers");
         }
         List<UserInfo> users = new ArrayList<>();
-        NodeList children = listUsers.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node node = children.item(i);
-            if (!(node instanceof Element element) || !"user".equals(element.getTagName())) {
-                continue;
+        List<String> removed = new ArrayList<>();
+        for (XMLElement element : listUsers.getChildren()) {
+            if ("user".equals(element.getTagName())) {
+                users.add(new UserInfo(
+                        XMLUtils.getContent(element, "name"),
+                        XMLUtils.getContent(element, "type")
+                ));
+            } else if ("removed".equals(element.getTagName())) {
+                removed.add(element.getTextContent());
             }
-            users.add(new UserInfo(
-                    XMLUtils.getContent(element, "name"),
-                    XMLUtils.getContent(element, "type")
-            ));
         }
-        return new ListUsersS2C(users);
+        return new ListUsersS2C(users, removed, parseVersion(listUsers.getAttribute("version")),
+                listUsers.getAttribute("next"), "true".equals(listUsers.getAttribute("delta")));
+    }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG).writeVarInt(users.size());
+        for (UserInfo user : users) {
+            writer.writeString(user.name()).writeString(user.clientType());
+        }
+        writer.writeVarInt(removed.size());
+        for (String name : removed) {
+            writer.writeString(name);
+        }
+        writer.writeVarLong(version + 1)
+                .writeString(next != null ? next : "")
+                .writeByte(delta ? 1 : 0);
+    }
+
+    public static ListUsersS2C fromBinary(BinaryReader reader) {
+        int count = reader.readVarInt();
+        if (count < 0) {
+            throw new SerializationException("Negative user count: " + count);
+        }
+        List<UserInfo> users = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            users.add(new UserInfo(reader.readString(), reader.readString()));
+        }
+        int removedCount = reader.readVarInt();
+        if (removedCount < 0) {
+            throw new SerializationException("Negative user count: " + removedCount);
+        }
+        List<String> removed = new ArrayList<>(Math.min(removedCount, 1024));
+        for (int i = 0; i < removedCount; i++) {
+            removed.add(reader.readString());
+        }
+        long version = reader.readVarLong() - 1;
+        String next = reader.readString();
+        return new ListUsersS2C(users, removed, version, next, reader.readByte() != 0);
+    }
+
+    private static long parseVersion(String value) {
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.strip());
+        } catch (NumberFormatException e) {
+            throw new SerializationException("Invalid presence version: " + value, e);
+        }
     }
 }
@@ -1,9 +1,12 @@
 package labs.network.protocol.s2c;
 
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
 import labs.network.protocol.Message;
+import labs.network.protocol.SerializationException;
+import labs.network.protocol.XMLElement;
 import labs.network.protocol.XMLUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import labs.network.protocol.XMLWriter;
 
 import java.io.Serial;
 
@@ -11,24 +14,73 @@ public class LoginResposeS2C extends Message {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    public static final int BINARY_TAG = 0x44;
+
     private final String session;
+    private final int heartbeatSeconds;
+    private final String compression;
 
     public LoginResposeS2C(String session) {
+        this(session, 0);
+    }
+
+    public LoginResposeS2C(String session, int heartbeatSeconds) {
+        this(session, heartbeatSeconds, "");
+    }
+
+    public LoginResposeS2C(String session, int heartbeatSeconds, String compression) {
         this.session = session;
+        this.heartbeatSeconds = heartbeatSeconds;
+        this.compression = compression;
     }
 
     public String getSession() {
         return session;
     }
 
+    public int getHeartbeatSeconds() {
+        return heartbeatSeconds;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    @Override
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("success")
+                .textElement("session", session);
+        if (heartbeatSeconds > 0) {
+            writer.textElement("heartbeat", Integer.toString(heartbeatSeconds));
+        }
+        if (!compression.isEmpty()) {
+            writer.textElement("compression", compression);
+        }
+        writer.endElement();
+    }
+
+    public static LoginResposeS2C fromXml(XMLElement success) {
+        return new LoginResposeS2C(
+                XMLUtils.getContent(success, "session"),
+                parseHeartbeat(XMLUtils.getOrDefault(success, "heartbeat", "0")),
+                XMLUtils.getOrDefault(success, "compression", "")
+        );
+    }
+
     @Override
-    public Element toXmlElement(Document document) {
-        Element success = document.createElement("success");
-        XMLUtils.appendTextElement(document, success, "session", session);
-        return success;
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG).writeString(session).writeVarInt(heartbeatSeconds).writeString(compression);
+    }
+
+    public static LoginResposeS2C fromBinary(BinaryReader reader) {
+        return new LoginResposeS2C(reader.readString(), reader.readVarInt(), reader.readString());
     }
 
-    public static LoginResposeS2C fromXml(Element success) {
-        return new LoginResposeS2C(XMLUtils.getContent(success, "session"));
+    private static int parseHeartbeat(String value) {
+        try {
+            return Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            throw new SerializationException("Invalid heartbeat interval: " + value, e);
+        }
     }
 }
@@ -1,8 +1,10 @@
 package labs.network.protocol.s2c;
 
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
 import labs.network.protocol.Message;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import labs.network.protocol.XMLElement;
+import labs.network.protocol.XMLWriter;
 
 import java.io.Serial;
 
@@ -10,14 +12,23 @@ public class LogoutResponseS2C extends Message {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    public static final int BINARY_TAG = 0x45;
+
+    @Override
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("success").attribute("response", "logout").endElement();
+    }
+
+    public static LogoutResponseS2C fromXml(XMLElement success) {
+        return new LogoutResponseS2C();
+    }
+
     @Override
-    public Element toXmlElement(Document document) {
-        Element success = document.createElement("success");
-        success.setAttribute("response", "logout");
-        return success;
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG);
     }
 
-    public static LogoutResponseS2C fromXml(Element success) {
+    public static LogoutResponseS2C fromBinary(BinaryReader reader) {
         return new LogoutResponseS2C();
     }
 }
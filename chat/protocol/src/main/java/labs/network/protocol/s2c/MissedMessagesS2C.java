@@ -0,0 +1,56 @@
+package labs.network.protocol.s2c;
+
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
+import labs.network.protocol.Message;
+import labs.network.protocol.SerializationException;
+import labs.network.protocol.XMLElement;
+import labs.network.protocol.XMLUtils;
+import labs.network.protocol.XMLWriter;
+
+import java.io.Serial;
+
+public class MissedMessagesS2C extends Message {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final int BINARY_TAG = 0x49;
+
+    private final int count;
+
+    public MissedMessagesS2C(int count) {
+        this.count = count;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("event").attribute("name", "missed")
+                .textElement("count", Integer.toString(count))
+                .endElement();
+    }
+
+    public static MissedMessagesS2C fromXml(XMLElement event) {
+        return new MissedMessagesS2C(parseCount(XMLUtils.getContent(event, "count")));
+    }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG).writeVarInt(count);
+    }
+
+    public static MissedMessagesS2C fromBinary(BinaryReader reader) {
+        return new MissedMessagesS2C(reader.readVarInt());
+    }
+
+    private static int parseCount(String value) {
+        try {
+            return Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            throw new SerializationException("Invalid count: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package labs.network.protocol.s2c;
+
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
+import labs.network.protocol.Message;
+import labs.network.protocol.SerializationException;
+import labs.network.protocol.XMLElement;
+import labs.network.protocol.XMLUtils;
+import labs.network.protocol.XMLWriter;
+
+import java.io.Serial;
+
+public class PongS2C extends Message {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final int BINARY_TAG = 0x4D;
+
+    private final long timestamp;
+
+    public PongS2C(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("success").attribute("response", "pong")
+                .textElement("time", Long.toString(timestamp))
+                .endElement();
+    }
+
+    public static PongS2C fromXml(XMLElement success) {
+        return new PongS2C(parseTimestamp(XMLUtils.getOrDefault(success, "time", "0")));
+    }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG).writeVarLong(timestamp);
+    }
+
+    public static PongS2C fromBinary(BinaryReader reader) {
+        return new PongS2C(reader.readVarLong());
+    }
+
+    private static long parseTimestamp(String value) {
+        try {
+            return Long.parseLong(value.strip());
+        } catch (NumberFormatException e) {
+            throw new SerializationException("Invalid pong time: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package labs.network.protocol.s2c;
+
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
+import labs.network.protocol.Message;
+import labs.network.protocol.SerializationException;
+import labs.network.protocol.XMLElement;
+import labs.network.protocol.XMLUtils;
+import labs.network.protocol.XMLWriter;
+
+import java.io.Serial;
+
+public class ReconnectEventS2C extends Message {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final int BINARY_TAG = 0x4C;
+
+    private final int delayMillis;
+
+    public ReconnectEventS2C(int delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    public int getDelayMillis() {
+        return delayMillis;
+    }
+
+    @Override
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("event").attribute("name", "reconnect")
+                .textElement("delay", Integer.toString(delayMillis))
+                .endElement();
+    }
+
+    public static ReconnectEventS2C fromXml(XMLElement event) {
+        return new ReconnectEventS2C(parseDelay(XMLUtils.getContent(event, "delay")));
+    }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG).writeVarInt(delayMillis);
+    }
+
+    public static ReconnectEventS2C fromBinary(BinaryReader reader) {
+        return new ReconnectEventS2C(reader.readVarInt());
+    }
+
+    private static int parseDelay(String value) {
+        try {
+            return Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            throw new SerializationException("Invalid reconnect delay: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package labs.network.protocol.s2c;
+
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
+import labs.network.protocol.Message;
+import labs.network.protocol.XMLElement;
+import labs.network.protocol.XMLUtils;
+import labs.network.protocol.XMLWriter;
+
+import java.io.Serial;
+
+public class RoomMessageEventS2C extends Message {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final int BINARY_TAG = 0x4B;
+
+    private final String room;
+    private final String message;
+    private final String fromName;
+
+    public RoomMessageEventS2C(String room, String message, String fromName) {
+        this.room = room;
+        this.message = message;
+        this.fromName = fromName;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getFromName() {
+        return fromName;
+    }
+
+    @Override
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("event").attribute("name", "roommessage")
+                .textElement("room", room)
+                .textElement("message", message)
+                .textElement("name", fromName)
+                .endElement();
+    }
+
+    public static RoomMessageEventS2C fromXml(XMLElement event) {
+        return new RoomMessageEventS2C(
+                XMLUtils.getContent(event, "room"),
+                XMLUtils.getContent(event, "message"),
+                XMLUtils.getContent(event, "name")
+        );
+    }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG)
+                .writeString(room)
+                .writeString(message)
+                .writeString(fromName);
+    }
+
+    public static RoomMessageEventS2C fromBinary(BinaryReader reader) {
+        return new RoomMessageEventS2C(reader.readString(), reader.readString(), reader.readString());
+    }
+}
@@ -0,0 +1,62 @@
+package labs.network.protocol.s2c;
+
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
+import labs.network.protocol.Message;
+import labs.network.protocol.XMLElement;
+import labs.network.protocol.XMLUtils;
+import labs.network.protocol.XMLWriter;
+
+import java.io.Serial;
+
+public class RoomResponseS2C extends Message {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final int BINARY_TAG = 0x4A;
+
+    private final String room;
+    private final boolean joined;
+
+    public RoomResponseS2C(String room, boolean joined) {
+        this.room = room;
+        this.joined = joined;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public boolean isJoined() {
+        return joined;
+    }
+
+    private String response() {
+        return joined ? "join" : "leave";
+    }
+
+    @Override
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("success").attribute("response", response())
+                .textElement("room", room)
+                .endElement();
+    }
+
+    public static RoomResponseS2C fromXml(XMLElement success) {
+        return new RoomResponseS2C(
+                XMLUtils.getContent(success, "room"),
+                "join".equals(success.getAttribute("response"))
+        );
+    }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG)
+                .writeString(room)
+                .writeByte(joined ? 1 : 0);
+    }
+
+    public static RoomResponseS2C fromBinary(BinaryReader reader) {
+        return new RoomResponseS2C(reader.readString(), reader.readByte() != 0);
+    }
+}
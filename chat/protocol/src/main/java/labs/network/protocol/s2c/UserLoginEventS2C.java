@@ -1,9 +1,11 @@
 package labs.network.protocol.s2c;
 
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
 import labs.network.protocol.Message;
+import labs.network.protocol.XMLElement;
 import labs.network.protocol.XMLUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import labs.network.protocol.XMLWriter;
 
 import java.io.Serial;
 
@@ -11,6 +13,8 @@ public class UserLoginEventS2C extends Message {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    public static final int BINARY_TAG = 0x47;
+
     private final String name;
     private final String clientType;
 
@@ -28,17 +32,27 @@ public class UserLoginEventS2C extends Message {
     }
 
     @Override
-    public Element toXmlElement(Document document) {
-        Element event = document.createElement("event");
-        event.setAttribute("name", "userlogin");
-        XMLUtils.appendTextElement(document, event, "name", name);
-        XMLUtils.appendTextElement(document, event, "type", clientType);
-        return event;
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("event").attribute("name", "userlogin")
+                .textElement("name", name)
+                .textElement("type", clientType)
+                .endElement();
     }
 
-    public static UserLoginEventS2C fromXml(Element event) {
+    public static UserLoginEventS2C fromXml(XMLElement event) {
         String name = XMLUtils.getContent(event, "name");
         String clientType = XMLUtils.getOrDefault(event, "type", "unknown");
         return new UserLoginEventS2C(name, clientType);
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG)
+                .writeString(name)
+                .writeString(clientType);
+    }
+
+    public static UserLoginEventS2C fromBinary(BinaryReader reader) {
+        return new UserLoginEventS2C(reader.readString(), reader.readString());
+    }
 }
@@ -1,9 +1,11 @@
 package labs.network.protocol.s2c;
 
+import labs.network.protocol.BinaryReader;
+import labs.network.protocol.BinaryWriter;
 import labs.network.protocol.Message;
+import labs.network.protocol.XMLElement;
 import labs.network.protocol.XMLUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import labs.network.protocol.XMLWriter;
 
 import java.io.Serial;
 
@@ -11,6 +13,8 @@ public class UserLogoutEventS2C extends Message {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    public static final int BINARY_TAG = 0x48;
+
     private final String name;
 
     public UserLogoutEventS2C(String name) {
@@ -22,14 +26,22 @@ public class UserLogoutEventS2C extends Message {
     }
 
     @Override
-    public Element toXmlElement(Document document) {
-        Element event = document.createElement("event");
-        event.setAttribute("name", "userlogout");
-        XMLUtils.appendTextElement(document, event, "name", name);
-        return event;
+    public void writeXml(XMLWriter writer) {
+        writer.startElement("event").attribute("name", "userlogout")
+                .textElement("name", name)
+                .endElement();
     }
 
-    public static UserLogoutEventS2C fromXml(Element event) {
+    public static UserLogoutEventS2C fromXml(XMLElement event) {
         return new UserLogoutEventS2C(XMLUtils.getContent(event, "name"));
     }
+
+    @Override
+    public void writeBinary(BinaryWriter writer) {
+        writer.writeByte(BINARY_TAG).writeString(name);
+    }
+
+    public static UserLogoutEventS2C fromBinary(BinaryReader reader) {
+        return new UserLogoutEventS2C(reader.readString());
+    }
 }
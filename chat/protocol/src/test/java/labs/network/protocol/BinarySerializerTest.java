@@ -0,0 +1,115 @@
+package labs.network.protocol;
+
+import labs.network.protocol.c2s.ResumeC2S;
+import labs.network.protocol.s2c.EventMessageS2C;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinarySerializerTest {
+    private final Serializer serializer = new BinarySerializer();
+
+    @Test
+    void testVarLongRoundTrip() {
+        long[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, -1, Long.MIN_VALUE, Long.MAX_VALUE};
+        BinaryWriter writer = new BinaryWriter();
+        for (long value : values) {
+            writer.writeVarLong(value);
+        }
+        BinaryReader reader = new BinaryReader(writer.toBytes());
+        for (long value : values) {
+            assertEquals(value, reader.readVarLong());
+        }
+        assertFalse(reader.hasRemaining());
+    }
+
+    @Test
+    void testVarLongLength() {
+        assertEquals(1, new BinaryWriter().writeVarLong(127).toBytes().length);
+        assertEquals(2, new BinaryWriter().writeVarLong(128).toBytes().length);
+        assertEquals(10, new BinaryWriter().writeVarLong(-1).toBytes().length);
+        assertEquals(5, new BinaryWriter().writeVarInt(-1).toBytes().length);
+    }
+
+    @Test
+    void testTruncatedVarLong() {
+        BinaryReader reader = new BinaryReader(new byte[]{(byte) 0x80, (byte) 0x80});
+        assertThrows(SerializationException.class, reader::readVarLong);
+    }
+
+    @Test
+    void testOverlongVarLong() {
+        byte[] data = new byte[11];
+        Arrays.fill(data, (byte) 0x80);
+        assertThrows(SerializationException.class, () -> new BinaryReader(data).readVarLong());
+    }
+
+    @Test
+    void testMessageRoundTrip() {
+        EventMessageS2C event = new EventMessageS2C("héllo 😀", "alice", 41);
+        event.setRequestId(1L << 40);
+        byte[] data = serializer.serialize(event);
+        assertEquals(EventMessageS2C.BINARY_TAG, data[0]);
+
+        EventMessageS2C decoded = assertInstanceOf(EventMessageS2C.class, serializer.deserialize(data));
+        assertEquals(event.getMessage(), decoded.getMessage());
+        assertEquals("alice", decoded.getFromName());
+        assertEquals(41, decoded.getIndex());
+        assertEquals(1L << 40, decoded.getRequestId());
+    }
+
+    @Test
+    void testMessageWithoutRequestId() {
+        ResumeC2S resume = new ResumeC2S("token", -1);
+        byte[] data = serializer.serialize(resume);
+        ResumeC2S decoded = assertInstanceOf(ResumeC2S.class, serializer.deserialize(data));
+        assertEquals("token", decoded.getSession());
+        assertEquals(-1, decoded.getLastMessage());
+        assertEquals(0, decoded.getRequestId());
+    }
+
+    @Test
+    void testDeserializeWithOffset() {
+        byte[] message = serializer.serialize(new EventMessageS2C("hi", "bob", 0));
+        byte[] framed = new byte[message.length + 3];
+        System.arraycopy(message, 0, framed, 2, message.length);
+        EventMessageS2C decoded = assertInstanceOf(EventMessageS2C.class,
+                serializer.deserialize(framed, 2, message.length));
+        assertEquals("hi", decoded.getMessage());
+    }
+
+    @Test
+    void testUnknownTag() {
+        assertThrows(SerializationException.class, () -> serializer.deserialize(new byte[]{0x7F}));
+    }
+
+    @Test
+    void testTrailingBytes() {
+        EventMessageS2C event = new EventMessageS2C("hi", "bob", 0);
+        event.setRequestId(7);
+        byte[] data = serializer.serialize(event);
+        byte[] padded = Arrays.copyOf(data, data.length + 1);
+        assertThrows(SerializationException.class, () -> serializer.deserialize(padded));
+    }
+
+    @Test
+    void testTruncatedString() {
+        byte[] data = serializer.serialize(new EventMessageS2C("hello", "bob", 0));
+        assertThrows(SerializationException.class, () -> serializer.deserialize(data, 0, 4));
+    }
+
+    @Test
+    void testXmlCanEncode() {
+        assertTrue(XMLWriter.canEncode("tab\tline\n😀"));
+        assertFalse(XMLWriter.canEncode("nul\u0000"));
+        assertFalse(XMLWriter.canEncode("lone \uD83D surrogate"));
+        assertFalse(XMLWriter.canEncode("\uFFFE"));
+        assertFalse(XMLWriter.canEncode("\uFFFF"));
+    }
+}
@@ -0,0 +1,118 @@
+package labs.network.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FrameCompressorTest {
+    private static final int MAX_SIZE = 64 * 1024;
+
+    private final FrameCompressor compressor = new FrameCompressor(256, Deflater.BEST_SPEED);
+    private final byte[] payload = "<event name=\"message\"><message>hello</message></event>".repeat(40)
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testRoundTrip() {
+        byte[] compressed = compressor.compress(payload);
+        assertTrue(compressed.length < payload.length);
+        assertArrayEquals(payload, compressor.decompress(compressed, 0, compressed.length, MAX_SIZE));
+        byte[] again = compressor.compress(payload);
+        assertArrayEquals(payload, compressor.decompress(again, 0, again.length, MAX_SIZE));
+    }
+
+    @Test
+    void testDecompressWithOffset() {
+        byte[] compressed = compressor.compress(payload);
+        byte[] framed = new byte[compressed.length + 6];
+        System.arraycopy(compressed, 0, framed, 4, compressed.length);
+        assertArrayEquals(payload, compressor.decompress(framed, 4, compressed.length, MAX_SIZE));
+    }
+
+    @Test
+    void testSkipsSmallAndIncompressiblePayloads() {
+        assertNull(compressor.compress(new byte[100]));
+        byte[] random = new byte[4096];
+        new Random(1).nextBytes(random);
+        assertNull(compressor.compress(random));
+    }
+
+    @Test
+    void testDeclaredLengthAboveMax() {
+        byte[] compressed = compressor.compress(payload);
+        assertThrows(SerializationException.class,
+                () -> compressor.decompress(compressed, 0, compressed.length, payload.length - 1));
+        byte[] negative = compressed.clone();
+        negative[0] = (byte) 0x80;
+        assertThrows(SerializationException.class,
+                () -> compressor.decompress(negative, 0, negative.length, MAX_SIZE));
+    }
+
+    @Test
+    void testDeclaredLengthMismatch() {
+        byte[] shorter = withDeclaredSize(compressor.compress(payload), payload.length - 1);
+        assertThrows(SerializationException.class,
+                () -> compressor.decompress(shorter, 0, shorter.length, MAX_SIZE));
+        byte[] longer = withDeclaredSize(compressor.compress(payload), payload.length + 1);
+        assertThrows(SerializationException.class,
+                () -> compressor.decompress(longer, 0, longer.length, MAX_SIZE));
+    }
+
+    @Test
+    void testTruncatedAndTrailingInput() {
+        byte[] compressed = compressor.compress(payload);
+        assertThrows(SerializationException.class, () -> compressor.decompress(compressed, 0, 3, MAX_SIZE));
+        assertThrows(SerializationException.class,
+                () -> compressor.decompress(compressed, 0, compressed.length - 2, MAX_SIZE));
+        byte[] trailing = Arrays.copyOf(compressed, compressed.length + 1);
+        assertThrows(SerializationException.class,
+                () -> compressor.decompress(trailing, 0, trailing.length, MAX_SIZE));
+
+        assertArrayEquals(payload, compressor.decompress(compressed, 0, compressed.length, MAX_SIZE));
+    }
+
+    @Test
+    void testCorruptInput() {
+        byte[] corrupt = compressor.compress(payload);
+        Arrays.fill(corrupt, 4, corrupt.length, (byte) 0xFF);
+        assertThrows(SerializationException.class,
+                () -> compressor.decompress(corrupt, 0, corrupt.length, MAX_SIZE));
+    }
+
+    @Test
+    void testClosed() {
+        byte[] compressed = compressor.compress(payload);
+        compressor.close();
+        assertNull(compressor.compress(payload));
+        assertThrows(SerializationException.class,
+                () -> compressor.decompress(compressed, 0, compressed.length, MAX_SIZE));
+    }
+
+    @Test
+    void testPrefixAndNegotiation() {
+        int prefix = FrameCompressor.COMPRESSED_FLAG | 1234;
+        assertTrue(FrameCompressor.isCompressed(prefix));
+        assertFalse(FrameCompressor.isCompressed(1234));
+        assertEquals(1234, FrameCompressor.length(prefix));
+        assertTrue(FrameCompressor.offers("gzip, Deflate", FrameCompressor.DEFLATE));
+        assertFalse(FrameCompressor.offers("gzip", FrameCompressor.DEFLATE));
+        assertFalse(FrameCompressor.offers(null, FrameCompressor.DEFLATE));
+    }
+
+    private static byte[] withDeclaredSize(byte[] compressed, int size) {
+        compressed[0] = (byte) (size >>> 24);
+        compressed[1] = (byte) (size >>> 16);
+        compressed[2] = (byte) (size >>> 8);
+        compressed[3] = (byte) size;
+        return compressed;
+    }
+}
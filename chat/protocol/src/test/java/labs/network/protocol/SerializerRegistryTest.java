@@ -0,0 +1,81 @@
+package labs.network.protocol;
+
+import labs.network.protocol.c2s.ConnectC2S;
+import labs.network.protocol.c2s.ResumeC2S;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SerializerRegistryTest {
+    private final SerializerRegistry registry = SerializerRegistry.defaults();
+
+    @Test
+    void testDetectsEveryDefaultFormat() {
+        for (String name : registry.names()) {
+            Serializer serializer = registry.create(name);
+            byte[] data = serializer.serialize(new ConnectC2S("alice", "test", ""));
+            Serializer detected = registry.detect(data, 0, data.length);
+            assertEquals(serializer.getClass(), detected.getClass(), name);
+            assertEquals("alice", assertInstanceOf(ConnectC2S.class, detected.deserialize(data)).getName());
+        }
+    }
+
+    @Test
+    void testDetectsBinaryResume() {
+        byte[] data = new BinarySerializer().serialize(new ResumeC2S("token", 3));
+        assertInstanceOf(BinarySerializer.class, registry.detect(data, 0, data.length));
+    }
+
+    @Test
+    void testDetectsXmlWithLeadingWhitespace() {
+        byte[] data = "\n  <command name=\"login\"/>".getBytes(StandardCharsets.UTF_8);
+        assertInstanceOf(XMLSerializer.class, registry.detect(data, 0, data.length));
+    }
+
+    @Test
+    void testDetectUsesOffset() {
+        byte[] data = {0x7F, '<'};
+        assertNull(registry.detect(data, 0, data.length));
+        assertInstanceOf(XMLSerializer.class, registry.detect(data, 1, 1));
+    }
+
+    @Test
+    void testDetectRejectsEmptyAndUnknown() {
+        assertNull(registry.detect(new byte[0], 0, 0));
+        assertNull(registry.detect(new byte[]{'<'}, 0, 0));
+        assertNull(registry.detect(new byte[]{0x7F}, 0, 1));
+    }
+
+    @Test
+    void testStatefulSerializerIsNotShared() {
+        byte[] data = {(byte) ObjectStreamSerializer.MAGIC};
+        assertNotSame(registry.detect(data, 0, 1), registry.detect(data, 0, 1));
+    }
+
+    @Test
+    void testRetainDropsDispatch() {
+        registry.retain(List.of(SerializerRegistry.XML));
+        byte[] data = new BinarySerializer().serialize(new ConnectC2S("alice", "test", ""));
+        assertNull(registry.detect(data, 0, data.length));
+        assertEquals(List.of(SerializerRegistry.XML), List.copyOf(registry.names()));
+    }
+
+    @Test
+    void testRegisterRejectsTakenFirstByte() {
+        assertThrows(IllegalArgumentException.class, () -> registry.register("other", XMLSerializer::new, '<'));
+    }
+
+    @Test
+    void testReregisterReplacesFirstBytes() {
+        registry.register(SerializerRegistry.XML, XMLSerializer::new, '<');
+        assertNull(registry.detect(new byte[]{' '}, 0, 1));
+        assertInstanceOf(XMLSerializer.class, registry.detect(new byte[]{'<'}, 0, 1));
+    }
+}
@@ -0,0 +1,68 @@
+package labs.network.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BufferPool {
+    private static final int MIN_SIZE_SHIFT = 9;
+    private static final int MAX_SIZE_SHIFT = 20;
+    private static final int HEAP_FRACTION = 64;
+
+    private final Queue<byte[]>[] classes;
+    private final long maxRetainedBytes;
+    private final AtomicLong retainedBytes = new AtomicLong(0);
+
+    public BufferPool() {
+        this(Runtime.getRuntime().maxMemory() / HEAP_FRACTION);
+    }
+
+    @SuppressWarnings("unchecked")
+    public BufferPool(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+        classes = (Queue<byte[]>[]) new Queue<?>[MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    public byte[] acquire(int size) {
+        int index = classIndex(size);
+        if (index >= classes.length) {
+            return new byte[size];
+        }
+        byte[] buffer = classes[index].poll();
+        if (buffer == null) {
+            return new byte[1 << (index + MIN_SIZE_SHIFT)];
+        }
+        retainedBytes.addAndGet(-buffer.length);
+        return buffer;
+    }
+
+    public void release(byte[] buffer) {
+        int length = buffer.length;
+        if (Integer.bitCount(length) != 1) {
+            return;
+        }
+        int index = Integer.numberOfTrailingZeros(length) - MIN_SIZE_SHIFT;
+        if (index < 0 || index >= classes.length) {
+            return;
+        }
+        if (retainedBytes.addAndGet(length) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-length);
+            return;
+        }
+        classes[index].offer(buffer);
+    }
+
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    private static int classIndex(int size) {
+        if (size <= 1 << MIN_SIZE_SHIFT) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_SHIFT;
+    }
+}
@@ -0,0 +1,208 @@
+package labs.network.server;
+
+import labs.network.protocol.FrameCompressor;
+import labs.network.protocol.Message;
+import labs.network.protocol.SerializerRegistry;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ChannelConnection extends Connection {
+    private static final int INITIAL_BUFFER_SIZE = 512;
+
+    final SocketChannel channel;
+    private final SelectorLoop loop;
+    private final SocketAddress remoteAddress;
+    private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+    private SelectionKey key;
+    private ByteBuffer readBuffer;
+    private ByteBuffer writeBuffer;
+    private boolean closeAfterWrite = false;
+
+    ChannelConnection(SocketChannel channel, SelectorLoop loop, ServerConfig config, ServerMetrics metrics,
+                      BufferPool bufferPool, SerializerRegistry serializers) throws IOException {
+        super(config, metrics, bufferPool, serializers);
+        this.readBuffer = ByteBuffer.wrap(bufferPool.acquire(INITIAL_BUFFER_SIZE));
+        this.channel = channel;
+        this.loop = loop;
+        this.remoteAddress = channel.getRemoteAddress();
+    }
+
+    void attach(SelectionKey key) {
+        this.key = key;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    protected void onQueued() {
+        if (writeScheduled.compareAndSet(false, true)) {
+            loop.scheduleWrite(this);
+        }
+    }
+
+    @Override
+    protected void closeTransport() {
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        // Close can come from any thread, but only the selector thread touches the buffers
+        loop.execute(this::releaseBuffers);
+    }
+
+    private void releaseBuffers() {
+        if (readBuffer != null) {
+            bufferPool.release(readBuffer.array());
+            readBuffer = null;
+        }
+        if (writeBuffer != null) {
+            bufferPool.release(writeBuffer.array());
+            writeBuffer = null;
+        }
+    }
+
+    @Override
+    protected void pauseReading() {
+        if (key.isValid()) {
+            key.interestOpsAnd(~SelectionKey.OP_READ);
+        }
+    }
+
+    @Override
+    protected void resumeReading() {
+        if (key.isValid()) {
+            key.interestOpsOr(SelectionKey.OP_READ);
+            loop.wakeup();
+        }
+    }
+
+    @Override
+    protected void executeOnReader(Runnable task) {
+        loop.execute(task);
+    }
+
+    boolean read(List<Message> out) throws IOException {
+        int read = channel.read(readBuffer);
+        if (read == -1) {
+            if (readBuffer.position() > 0) {
+                throw new EOFException("Unexpected end of stream in the middle of a frame");
+            }
+            return false;
+        }
+        readBuffer.flip();
+        while (readBuffer.remaining() >= Integer.BYTES) {
+            int prefix = readBuffer.getInt(readBuffer.position());
+            int size = FrameCompressor.length(prefix);
+            checkFrameSize(size);
+            if (readBuffer.remaining() < Integer.BYTES + size) {
+                break;
+            }
+            int offset = readBuffer.position() + Integer.BYTES;
+            out.add(decode(prefix, readBuffer.array(), offset, size));
+            readBuffer.position(offset + size);
+        }
+        prepareReadBuffer();
+        return true;
+    }
+
+    private void prepareReadBuffer() {
+        if (!readBuffer.hasRemaining() && readBuffer.capacity() > INITIAL_BUFFER_SIZE) {
+            replaceReadBuffer(INITIAL_BUFFER_SIZE);
+            return;
+        }
+        int required = readBuffer.remaining() >= Integer.BYTES
+                ? Integer.BYTES + FrameCompressor.length(readBuffer.getInt(readBuffer.position()))
+                : Integer.BYTES;
+        if (required > readBuffer.capacity()) {
+            replaceReadBuffer(required);
+            return;
+        }
+        readBuffer.compact();
+    }
+
+    private void replaceReadBuffer(int capacity) {
+        ByteBuffer replacement = ByteBuffer.wrap(bufferPool.acquire(capacity));
+        replacement.put(readBuffer);
+        bufferPool.release(readBuffer.array());
+        readBuffer = replacement;
+    }
+
+    void flush() throws IOException {
+        writeScheduled.set(false);
+        int count = 0;
+        OutgoingFrame frame;
+        while (!closeAfterWrite
+                && count < MAX_BATCH_MESSAGES
+                && (writeBuffer == null || writeBuffer.position() < MAX_BATCH_BYTES)
+                && (frame = pollFrame()) != null) {
+            byte[] payload = encode(frame);
+            if (payload != null) {
+                appendFrame(payload);
+            }
+            closeAfterWrite = frame.isClosing();
+            count += 1;
+        }
+        if (writeBuffer == null) {
+            if (closeAfterWrite) {
+                close();
+            }
+            return;
+        }
+        writeBuffer.flip();
+        int written = channel.write(writeBuffer);
+        if (count > 0) {
+            writerStats.recordFlush(count, written);
+        } else {
+            writerStats.recordRetryWrite(written);
+        }
+        if (writeBuffer.hasRemaining()) {
+            writeBuffer.compact();
+            key.interestOpsOr(SelectionKey.OP_WRITE);
+            return;
+        }
+        bufferPool.release(writeBuffer.array());
+        writeBuffer = null;
+        if (closeAfterWrite) {
+            close();
+            return;
+        }
+        key.interestOpsAnd(~SelectionKey.OP_WRITE);
+        if (hasPendingFrames()) {
+            onQueued();
+        }
+    }
+
+    private void appendFrame(byte[] payload) {
+        int prefix = payload.length;
+        byte[] compressed = compress(payload);
+        if (compressed != null) {
+            payload = compressed;
+            prefix = compressed.length | FrameCompressor.COMPRESSED_FLAG;
+        }
+        int required = Integer.BYTES + payload.length;
+        if (writeBuffer == null) {
+            writeBuffer = ByteBuffer.wrap(bufferPool.acquire(required));
+        } else if (writeBuffer.remaining() < required) {
+            ByteBuffer grown = ByteBuffer.wrap(bufferPool.acquire(writeBuffer.position() + required));
+            writeBuffer.flip();
+            grown.put(writeBuffer);
+            bufferPool.release(writeBuffer.array());
+            writeBuffer = grown;
+        }
+        writeBuffer.putInt(prefix);
+        writeBuffer.put(payload);
+    }
+}
@@ -0,0 +1,402 @@
+package labs.network.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+public class ChatJournal implements Closeable {
+    private static final Logger LOGGER = LogManager.getLogger(ChatJournal.class);
+
+    private static final int RECORD_USER = 1;
+    private static final int RECORD_MESSAGE = 2;
+    private static final int RECORD_JOIN = 3;
+    private static final int RECORD_LEAVE = 4;
+    private static final int RECORD_ROOM_MESSAGE = 5;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private final Path path;
+    private final Path rotatedPath;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Object closeMarker = new Object();
+    private final AtomicLong appendedRecords = new AtomicLong(0);
+    private FileChannel channel;
+    private Thread writerThread;
+    private int pendingRecords = 0;
+    private volatile boolean closed = false;
+
+    public ChatJournal(Path path) {
+        this.path = path;
+        this.rotatedPath = path.resolveSibling(path.getFileName() + ".old");
+    }
+
+    public static Path pathFor(Path savePath) {
+        return savePath.resolveSibling(savePath.getFileName() + ".journal");
+    }
+
+    public void replayInto(ChatState chat) throws IOException {
+        replayFile(rotatedPath, chat);
+        long validLength = replayFile(path, chat);
+        if (Files.exists(path) && Files.size(path) > validLength) {
+            LOGGER.warn("Truncating torn journal tail at {} bytes", validLength);
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                file.truncate(validLength);
+            }
+        }
+    }
+
+    public void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        writerThread = Thread.ofPlatform().name("chat-journal").start(this::writerLoop);
+    }
+
+    public void appendUser(UserState user) {
+        append(encode(out -> {
+            out.writeByte(RECORD_USER);
+            writeString(out, user.name);
+            writeString(out, user.clientType != null ? user.clientType : "");
+            out.writeBoolean(user.hasPassword);
+            writeBytes(out, user.passwordHash);
+            writeBytes(out, user.passwordSalt);
+            out.writeInt(user.passwordIterations);
+            out.writeLong(user.sessionEpoch);
+        }));
+    }
+
+    public void appendMessage(ChatMessage message) {
+        append(encode(out -> {
+            out.writeByte(RECORD_MESSAGE);
+            out.writeInt(message.index());
+            writeString(out, message.fromName());
+            writeString(out, message.text());
+        }));
+    }
+
+    public void appendJoin(String userName, String room) {
+        append(encode(out -> {
+            out.writeByte(RECORD_JOIN);
+            writeString(out, userName);
+            writeString(out, room);
+        }));
+    }
+
+    public void appendLeave(String userName, String room) {
+        append(encode(out -> {
+            out.writeByte(RECORD_LEAVE);
+            writeString(out, userName);
+            writeString(out, room);
+        }));
+    }
+
+    public void appendRoomMessage(String room, ChatMessage message) {
+        append(encode(out -> {
+            out.writeByte(RECORD_ROOM_MESSAGE);
+            writeString(out, room);
+            out.writeInt(message.index());
+            writeString(out, message.fromName());
+            writeString(out, message.text());
+        }));
+    }
+
+    public void rotate() throws IOException {
+        if (closed) {
+            throw new IOException("Journal closed");
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.add(done);
+        try {
+            done.join();
+        } catch (RuntimeException e) {
+            throw new IOException("Journal rotation failed", e.getCause());
+        }
+    }
+
+    /**
+     * Counts records handed to the writer, including those not yet forced to disk. Only meant for deciding
+     * whether a snapshot is worth taking, since the snapshot is built from the in-memory state anyway.
+     */
+    public long getAppendedRecords() {
+        return appendedRecords.get();
+    }
+
+    public void dropRotated() throws IOException {
+        Files.deleteIfExists(rotatedPath);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(closeMarker);
+        if (writerThread != null) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void append(byte[] record) {
+        if (closed) {
+            LOGGER.warn("Journal record dropped after close");
+            return;
+        }
+        appendedRecords.incrementAndGet();
+        queue.add(record);
+    }
+
+    private void writerLoop() {
+        List<Object> batch = new ArrayList<>();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            queue.drainTo(batch);
+            for (Object item : batch) {
+                if (item instanceof byte[] record) {
+                    buffer.writeBytes(record);
+                    pendingRecords += 1;
+                    continue;
+                }
+                boolean committed = commitOrDrop(buffer);
+                if (item == closeMarker) {
+                    running = false;
+                } else if (item instanceof CompletableFuture<?> rotation) {
+                    if (committed) {
+                        rotateFile(rotation);
+                    } else {
+                        rotation.completeExceptionally(new IOException("Journal write failed before rotation"));
+                    }
+                }
+            }
+            commitOrDrop(buffer);
+            batch.clear();
+        }
+        queue.drainTo(batch);
+        for (Object item : batch) {
+            if (item instanceof CompletableFuture<?> rotation) {
+                rotation.completeExceptionally(new IOException("Journal closed"));
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.error("Error closing journal", e);
+        }
+    }
+
+    private boolean commitOrDrop(ByteArrayOutputStream buffer) {
+        if (buffer.size() == 0) {
+            return true;
+        }
+        ByteBuffer data = ByteBuffer.wrap(buffer.toByteArray());
+        buffer.reset();
+        int records = pendingRecords;
+        pendingRecords = 0;
+        long validLength = -1;
+        try {
+            validLength = channel.size();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(false);
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("Journal write failed, dropped {} records", records, e);
+            // A partial group would stop replay at the torn record and hide everything appended after it.
+            if (validLength >= 0) {
+                try {
+                    channel.truncate(validLength);
+                } catch (IOException truncate) {
+                    LOGGER.error("Failed to truncate journal after write failure", truncate);
+                }
+            }
+            return false;
+        }
+    }
+
+    private void rotateFile(CompletableFuture<?> rotation) {
+        try {
+            channel.close();
+            if (Files.exists(rotatedPath)) {
+                appendFile(path, rotatedPath);
+                Files.delete(path);
+            } else {
+                Files.move(path, rotatedPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            rotation.complete(null);
+        } catch (IOException e) {
+            rotation.completeExceptionally(e);
+            try {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } catch (IOException reopen) {
+                LOGGER.error("Failed to reopen journal", reopen);
+            }
+        }
+    }
+
+    private static void appendFile(Path from, Path to) throws IOException {
+        try (FileChannel source = FileChannel.open(from, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(to, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long position = 0;
+            long size = source.size();
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+            target.force(false);
+        }
+    }
+
+    private static long replayFile(Path file, ChatState chat) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long validLength = 0;
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                int checksum = in.readInt();
+                byte[] record = new byte[length];
+                try {
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (checksum != crc(record)) {
+                    break;
+                }
+                apply(record, chat);
+                validLength += HEADER_SIZE + length;
+                records += 1;
+            }
+        } catch (EOFException ignored) {
+        }
+        LOGGER.info("Replayed {} journal records from {}", records, file);
+        return validLength;
+    }
+
+    private static void apply(byte[] record, ChatState chat) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case RECORD_USER -> {
+                UserState user = new UserState(readString(in));
+                user.clientType = readString(in);
+                user.hasPassword = in.readBoolean();
+                byte[] hash = readBytes(in);
+                byte[] salt = readBytes(in);
+                user.passwordHash = user.hasPassword ? hash : null;
+                user.passwordSalt = salt.length > 0 ? salt : null;
+                user.passwordIterations = in.readInt();
+                user.sessionEpoch = in.readLong();
+                chat.applyUser(user);
+            }
+            case RECORD_MESSAGE -> {
+                int index = in.readInt();
+                String from = readString(in);
+                String text = readString(in);
+                chat.applyMessage(new ChatMessage(from, text, index));
+            }
+            case RECORD_JOIN -> chat.applyJoin(readString(in), readString(in));
+            case RECORD_LEAVE -> chat.applyLeave(readString(in), readString(in));
+            case RECORD_ROOM_MESSAGE -> {
+                String room = readString(in);
+                int index = in.readInt();
+                String from = readString(in);
+                String text = readString(in);
+                chat.applyRoomMessage(room, new ChatMessage(from, text, index));
+            }
+            default -> throw new IOException("Unknown journal record type: " + type);
+        }
+    }
+
+    private static byte[] encode(RecordWriter writer) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+            writer.write(new DataOutputStream(body));
+            byte[] payload = body.toByteArray();
+            ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+            record.putInt(payload.length);
+            record.putInt(crc(payload));
+            record.put(payload);
+            return record.array();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        byte[] bytes = value != null ? value : new byte[0];
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_RECORD_SIZE) {
+            throw new IOException("Invalid byte array length in journal: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_RECORD_SIZE) {
+            throw new IOException("Invalid string length in journal: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -1,44 +1,203 @@
 package labs.network.server;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serial;
 import java.io.Serializable;
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ChatState implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
     private Map<String, UserState> users = new ConcurrentHashMap<>();
-    private List<ChatMessage> messages = new CopyOnWriteArrayList<>();
+    private Map<String, RoomState> rooms = new ConcurrentHashMap<>();
+    private MessageHistory history;
     private int messageIndex = 0;
+    private int historySize;
+    private byte[] sessionSecret;
+    private transient ChatJournal journal;
 
-    public ChatMessage addMessage(String from, String text) {
+    public ChatState(int historySize) {
+        this.history = new MessageHistory(historySize);
+        this.historySize = historySize;
+    }
+
+    synchronized void resizeHistory(int historySize) {
+        this.historySize = historySize;
+        history = history != null ? history.resize(historySize) : new MessageHistory(historySize);
+        for (RoomState room : rooms.values()) {
+            room.resizeHistory(historySize);
+        }
+    }
+
+    public void setJournal(ChatJournal journal) {
+        this.journal = journal;
+    }
+
+    public synchronized ChatMessage addMessage(String from, String text) {
         ChatMessage msg = new ChatMessage(from, text, messageIndex);
-//        messages.add(msg);
+        history.add(msg);
         messageIndex += 1;
-        if (messages.size() > 200) {
-            messages.removeFirst();
+        if (journal != null) {
+            journal.appendMessage(msg);
         }
         return msg;
     }
 
-    public List<ChatMessage> getMessages() {
-        return messages;
+    public synchronized boolean addSequencedMessage(ChatMessage msg) {
+        if (msg.index() < messageIndex) {
+            return false;
+        }
+        history.add(msg);
+        messageIndex = msg.index() + 1;
+        if (journal != null) {
+            journal.appendMessage(msg);
+        }
+        return true;
+    }
+
+    synchronized void applyMessage(ChatMessage msg) {
+        if (msg.index() >= messageIndex) {
+            history.add(msg);
+            messageIndex = msg.index() + 1;
+        }
+    }
+
+    public MessageHistory getHistory() {
+        return history;
     }
 
     public Collection<UserState> getUsers() {
         return users.values();
     }
 
+    Collection<RoomState> getRooms() {
+        return rooms.values();
+    }
+
     public UserState findUser(String name) {
         return users.get(name);
     }
 
-    public UserState newUser(String name, String password) {
-        UserState user = new UserState(name, password);
+    public synchronized UserState newUser(String name, String clientType) {
+        UserState existing = users.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        UserState user = new UserState(name);
+        user.clientType = clientType;
         users.put(name, user);
+        saveUser(user);
+        return user;
+    }
+
+    public void saveUser(UserState user) {
+        if (journal != null) {
+            journal.appendUser(user);
+        }
+    }
+
+    public synchronized UserState mergeUser(UserState incoming) {
+        UserState user = users.putIfAbsent(incoming.name, incoming);
+        if (user == null) {
+            user = incoming;
+        } else {
+            user.updateCredentials(incoming);
+        }
+        saveUser(user);
         return user;
     }
+
+    void applyUser(UserState user) {
+        UserState existing = users.get(user.name);
+        if (existing != null) {
+            user.lastReceivedMessage = existing.lastReceivedMessage;
+            user.rooms = existing.rooms;
+            user.sessionEpoch = Math.max(user.sessionEpoch, existing.sessionEpoch);
+        }
+        users.put(user.name, user);
+    }
+
+    synchronized boolean ensureSessionSecret() {
+        if (sessionSecret != null) {
+            return false;
+        }
+        sessionSecret = new byte[32];
+        new SecureRandom().nextBytes(sessionSecret);
+        return true;
+    }
+
+    byte[] getSessionSecret() {
+        return sessionSecret;
+    }
+
+    public RoomState findRoom(String name) {
+        return rooms.get(name);
+    }
+
+    RoomState room(String name) {
+        return rooms.computeIfAbsent(name, n -> new RoomState(n, historySize));
+    }
+
+    public RoomState joinRoom(UserState user, String roomName) {
+        RoomState room = room(roomName);
+        if (user.rooms.putIfAbsent(roomName, -1) == null && journal != null) {
+            journal.appendJoin(user.name, roomName);
+        }
+        return room;
+    }
+
+    public boolean leaveRoom(UserState user, String roomName) {
+        if (user.rooms.remove(roomName) == null) {
+            return false;
+        }
+        if (journal != null) {
+            journal.appendLeave(user.name, roomName);
+        }
+        return true;
+    }
+
+    public ChatMessage addRoomMessage(RoomState room, String from, String text) {
+        return room.addMessage(from, text, journal);
+    }
+
+    public boolean addSequencedRoomMessage(RoomState room, ChatMessage msg) {
+        return room.addSequencedMessage(msg, journal);
+    }
+
+    void applyJoin(String userName, String roomName) {
+        UserState user = users.get(userName);
+        if (user != null) {
+            room(roomName);
+            user.rooms.putIfAbsent(roomName, -1);
+        }
+    }
+
+    void applyLeave(String userName, String roomName) {
+        UserState user = users.get(userName);
+        if (user != null) {
+            user.rooms.remove(roomName);
+        }
+    }
+
+    void applyRoomMessage(String roomName, ChatMessage msg) {
+        room(roomName).applyMessage(msg);
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (rooms == null) {
+            rooms = new ConcurrentHashMap<>();
+        }
+    }
+
+    @Serial
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
 }
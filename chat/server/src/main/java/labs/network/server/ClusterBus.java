@@ -0,0 +1,31 @@
+package labs.network.server;
+
+import java.io.IOException;
+
+public interface ClusterBus {
+    void start(Listener listener) throws IOException;
+
+    String getNodeId();
+
+    boolean isClustered();
+
+    boolean isSequencer();
+
+    int getConnectedPeers();
+
+    void publish(ClusterEvent event);
+
+    boolean sendToSequencer(ClusterEvent event);
+
+    void sendTo(String nodeId, ClusterEvent event);
+
+    void close();
+
+    interface Listener {
+        void onClusterEvent(String nodeId, ClusterEvent event);
+
+        void onPeerConnected(String nodeId);
+
+        void onPeerDown(String nodeId);
+    }
+}
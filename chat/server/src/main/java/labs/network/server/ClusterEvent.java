@@ -0,0 +1,153 @@
+package labs.network.server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+public sealed interface ClusterEvent {
+    int MAX_FIELD_SIZE = 16 * 1024 * 1024;
+
+    record ChatSubmitted(String from, String text) implements ClusterEvent {
+    }
+
+    record ChatSequenced(int index, String from, String text) implements ClusterEvent {
+    }
+
+    record RoomSubmitted(String room, String from, String text) implements ClusterEvent {
+    }
+
+    record RoomSequenced(String room, int index, String from, String text) implements ClusterEvent {
+    }
+
+    record PresenceChanged(String name, String clientType, boolean online) implements ClusterEvent {
+    }
+
+    record UserUpdated(String name, String clientType, boolean hasPassword,
+                       byte[] passwordHash, byte[] passwordSalt, int passwordIterations,
+                       long sessionEpoch) implements ClusterEvent {
+        static UserUpdated of(UserState user) {
+            synchronized (user) {
+                return new UserUpdated(user.name, user.clientType, user.hasPassword,
+                        user.passwordHash, user.passwordSalt, user.passwordIterations, user.sessionEpoch);
+            }
+        }
+
+        UserState toUserState() {
+            UserState user = new UserState(name);
+            user.clientType = clientType;
+            user.hasPassword = hasPassword;
+            user.passwordHash = passwordHash;
+            user.passwordSalt = passwordSalt;
+            user.passwordIterations = passwordIterations;
+            user.sessionEpoch = sessionEpoch;
+            return user;
+        }
+    }
+
+    record MembershipChanged(String name, String room, boolean joined) implements ClusterEvent {
+    }
+
+    static byte[] encode(ClusterEvent event) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            switch (event) {
+                case ChatSubmitted e -> {
+                    out.writeByte(1);
+                    writeString(out, e.from());
+                    writeString(out, e.text());
+                }
+                case ChatSequenced e -> {
+                    out.writeByte(2);
+                    out.writeInt(e.index());
+                    writeString(out, e.from());
+                    writeString(out, e.text());
+                }
+                case RoomSubmitted e -> {
+                    out.writeByte(3);
+                    writeString(out, e.room());
+                    writeString(out, e.from());
+                    writeString(out, e.text());
+                }
+                case RoomSequenced e -> {
+                    out.writeByte(4);
+                    writeString(out, e.room());
+                    out.writeInt(e.index());
+                    writeString(out, e.from());
+                    writeString(out, e.text());
+                }
+                case PresenceChanged e -> {
+                    out.writeByte(5);
+                    writeString(out, e.name());
+                    writeString(out, e.clientType() != null ? e.clientType() : "");
+                    out.writeBoolean(e.online());
+                }
+                case UserUpdated e -> {
+                    out.writeByte(6);
+                    writeString(out, e.name());
+                    writeString(out, e.clientType() != null ? e.clientType() : "");
+                    out.writeBoolean(e.hasPassword());
+                    writeBytes(out, e.passwordHash());
+                    writeBytes(out, e.passwordSalt());
+                    out.writeInt(e.passwordIterations());
+                    out.writeLong(e.sessionEpoch());
+                }
+                case MembershipChanged e -> {
+                    out.writeByte(7);
+                    writeString(out, e.name());
+                    writeString(out, e.room());
+                    out.writeBoolean(e.joined());
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static ClusterEvent decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int type = in.readUnsignedByte();
+        return switch (type) {
+            case 1 -> new ChatSubmitted(readString(in), readString(in));
+            case 2 -> new ChatSequenced(in.readInt(), readString(in), readString(in));
+            case 3 -> new RoomSubmitted(readString(in), readString(in), readString(in));
+            case 4 -> new RoomSequenced(readString(in), in.readInt(), readString(in), readString(in));
+            case 5 -> new PresenceChanged(readString(in), readString(in), in.readBoolean());
+            case 6 -> {
+                String name = readString(in);
+                String clientType = readString(in);
+                boolean hasPassword = in.readBoolean();
+                byte[] hash = readBytes(in);
+                byte[] salt = readBytes(in);
+                yield new UserUpdated(name, clientType, hasPassword,
+                        hasPassword ? hash : null, salt.length > 0 ? salt : null, in.readInt(), in.readLong());
+            }
+            case 7 -> new MembershipChanged(readString(in), readString(in), in.readBoolean());
+            default -> throw new IOException("Unknown cluster event type: " + type);
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        byte[] bytes = value != null ? value : new byte[0];
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FIELD_SIZE) {
+            throw new IOException("Invalid field length in cluster event: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
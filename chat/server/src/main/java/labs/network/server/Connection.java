@@ -2,133 +2,282 @@ package labs.network.server;
 
 import labs.network.protocol.*;
 import labs.network.protocol.c2s.ConnectC2S;
+import labs.network.protocol.c2s.ResumeC2S;
 import labs.network.protocol.s2c.ErrorS2C;
+import labs.network.protocol.s2c.MissedMessagesS2C;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
-import java.io.*;
-import java.net.Socket;
-import java.nio.ByteBuffer;
-import java.util.List;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
-public class Connection {
-    private static final int BUFFER_SIZE = 64 * 1024;
-    private static final ByteBuffer SIZE_BUFFER_TEMPLATE = ByteBuffer.allocate(Integer.BYTES);
+public abstract class Connection {
+    private static final Logger LOGGER = LogManager.getLogger(Connection.class);
 
-    final Socket socket;
-    final InputStream inputStream;
-    final OutputStream outputStream;
-    private final BlockingQueue<Message> sendQueue = new LinkedBlockingQueue<>();
+    protected static final int MAX_BATCH_MESSAGES = 256;
+    protected static final int MAX_BATCH_BYTES = 64 * 1024;
+
+    protected final BlockingQueue<QueuedFrame> sendQueue;
+    protected final WriterStats writerStats;
+    protected final ServerMetrics metrics;
+    protected final BufferPool bufferPool;
+    protected final int maxFrameSize;
+    private final SerializerRegistry serializers;
+    private final OverflowPolicy overflowPolicy;
     private final AtomicBoolean closed = new AtomicBoolean(false);
-    private Thread writerThread;
+    private final AtomicInteger missedMessages = new AtomicInteger(0);
+    private final Object inboundLock = new Object();
+    private final Queue<Message> heldMessages = new ArrayDeque<>();
+    private boolean inboundPaused = false;
+    final RateLimiter messageLimiter;
+    final long connectedAt = System.nanoTime();
+    volatile long lastReadAt = connectedAt;
+    volatile TimerWheel.Timeout idleCheck;
+    private volatile FrameCompressor compressor;
+    Consumer<Connection> overflowHandler = Connection::close;
     public Serializer serializer;
-    public String sessionId;
-    private final ByteBuffer sizeBuffer = ByteBuffer.allocate(Integer.BYTES);
+    public volatile String sessionId;
 
-    Connection(Socket socket) throws IOException {
-        this.socket = socket;
-        this.inputStream = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
-        this.outputStream = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+    protected Connection(ServerConfig config, ServerMetrics metrics, BufferPool bufferPool,
+                         SerializerRegistry serializers) {
+        this.sendQueue = new LinkedBlockingQueue<>(config.sendQueueCapacity);
+        this.metrics = metrics;
+        this.writerStats = metrics.getWriterStats();
+        this.bufferPool = bufferPool;
+        this.maxFrameSize = config.maxFrameSize;
+        this.serializers = serializers;
+        this.overflowPolicy = config.overflowPolicy;
+        this.messageLimiter = config.messageRateLimit > 0
+                ? new RateLimiter(config.messageRateLimit, config.messageBurst)
+                : null;
     }
 
-    void startWriter() {
-        assert writerThread == null;
-        writerThread = Thread.ofVirtual().start(this::writerLoop);
+    public abstract SocketAddress getRemoteAddress();
+
+    protected abstract void onQueued();
+
+    protected abstract void closeTransport();
+
+    protected abstract void pauseReading();
+
+    protected abstract void resumeReading();
+
+    protected abstract void executeOnReader(Runnable task);
+
+    void pauseInbound() {
+        synchronized (inboundLock) {
+            inboundPaused = true;
+            pauseReading();
+        }
+    }
+
+    boolean holdInbound(Message message) {
+        synchronized (inboundLock) {
+            if (!inboundPaused) {
+                return false;
+            }
+            heldMessages.add(message);
+            return true;
+        }
+    }
+
+    Message pollHeld() {
+        synchronized (inboundLock) {
+            Message message = heldMessages.poll();
+            if (message == null) {
+                inboundPaused = false;
+                resumeReading();
+            }
+            return message;
+        }
     }
 
     void send(Message message) {
-        sendQueue.offer(message);
+        send(OutgoingFrame.of(message));
+    }
+
+    void send(OutgoingFrame frame) {
+        if (closed.get()) {
+            return;
+        }
+        QueuedFrame queued = new QueuedFrame(frame, System.nanoTime());
+        if (sendQueue.offer(queued)) {
+            onQueued();
+            return;
+        }
+        handleOverflow(queued);
+    }
+
+    public int getQueueDepth() {
+        return sendQueue.size();
+    }
+
+    protected OutgoingFrame takeFrame() throws InterruptedException {
+        OutgoingFrame frame = pollFrame();
+        return frame != null ? frame : dequeued(sendQueue.take());
+    }
+
+    protected boolean hasPendingFrames() {
+        return !sendQueue.isEmpty() || missedMessages.get() > 0;
+    }
+
+    protected OutgoingFrame pollFrame() {
+        QueuedFrame queued = sendQueue.poll();
+        if (queued == null) {
+            int missed = missedMessages.getAndSet(0);
+            if (missed > 0) {
+                return OutgoingFrame.of(new MissedMessagesS2C(missed));
+            }
+            return null;
+        }
+        return dequeued(queued);
+    }
+
+    private OutgoingFrame dequeued(QueuedFrame queued) {
+        metrics.getQueueWait().record(System.nanoTime() - queued.enqueuedAt());
+        return queued.frame();
+    }
+
+    private void handleOverflow(QueuedFrame frame) {
+        if (overflowPolicy == OverflowPolicy.COALESCE && frame.frame().isDroppable()) {
+            missedMessages.incrementAndGet();
+            writerStats.recordDropped();
+            return;
+        }
+        if (overflowPolicy != OverflowPolicy.DISCONNECT && dropOldestDroppable() && sendQueue.offer(frame)) {
+            onQueued();
+            return;
+        }
+        writerStats.recordOverflowDisconnect();
+        overflowHandler.accept(this);
+    }
+
+    private boolean dropOldestDroppable() {
+        Iterator<QueuedFrame> iterator = sendQueue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().frame().isDroppable()) {
+                iterator.remove();
+                writerStats.recordDropped();
+                if (overflowPolicy == OverflowPolicy.COALESCE) {
+                    missedMessages.incrementAndGet();
+                }
+                return true;
+            }
+        }
+        return false;
     }
 
     public void sendError(String error) {
         send(new ErrorS2C(error));
     }
 
+    void reply(Message request, Message response) {
+        response.setRequestId(request.getRequestId());
+        send(response);
+    }
+
+    void replyError(Message request, String error) {
+        reply(request, new ErrorS2C(error));
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
     void close() {
         if (!closed.compareAndSet(false, true)) {
             return;
         }
-        Thread thread = writerThread;
-        if (thread != null) {
-            thread.interrupt();
-        }
         sendQueue.clear();
-        try {
-            socket.close();
-        } catch (IOException ignored) {
+        TimerWheel.Timeout check = idleCheck;
+        if (check != null) {
+            check.cancel();
         }
-    }
-
-    private void writerLoop() {
-        try {
-            while (!Thread.currentThread().isInterrupted()) {
-                Message message = sendQueue.take();
-                write(message);
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        } catch (IOException e) {
-            close();
+        closeTransport();
+        FrameCompressor current = compressor;
+        if (current != null) {
+            current.close();
         }
     }
 
-    private void write(Message message) throws IOException {
+    protected byte[] encode(OutgoingFrame frame) {
         if (serializer == null) {
             serializer = new XMLSerializer();
         }
-        byte[] payload = serializer.serialize(message);
-        sizeBuffer.clear();
-        sizeBuffer.putInt(payload.length);
-        sizeBuffer.flip();
+        long start = System.nanoTime();
+        try {
+            byte[] payload = frame.encode(serializer);
+            metrics.getSerialization().record(System.nanoTime() - start);
+            return payload;
+        } catch (SerializationException e) {
+            writerStats.recordDropped();
+            LOGGER.warn("Dropped unencodable frame for {}: {}", getRemoteAddress(), e.getMessage());
+            return null;
+        }
+    }
 
-        outputStream.write(sizeBuffer.array(), 0, Integer.BYTES);
-        outputStream.write(payload);
-        outputStream.flush();
+    void enableCompression(FrameCompressor compressor) {
+        this.compressor = compressor;
+        if (isClosed()) {
+            compressor.close();
+        }
     }
 
-    public Message readMessage() throws IOException {
-        byte[] sizeBytes = readFully(Integer.BYTES);
-        if (sizeBytes == null) {
+    protected byte[] compress(byte[] payload) {
+        FrameCompressor current = compressor;
+        if (current == null) {
             return null;
         }
-        int messageSize = ByteBuffer.wrap(sizeBytes).getInt();
-        byte[] data = readFully(messageSize);
-        if (data == null) {
-            return null;
+        byte[] compressed = current.compress(payload);
+        if (compressed != null) {
+            metrics.recordCompression(payload.length, compressed.length);
         }
+        return compressed;
+    }
 
-        if (serializer != null) {
-            return serializer.deserialize(data);
-        }
-        List<Serializer> candidates = List.of(new XMLSerializer(), new ObjectSerializer());
-        for (Serializer candidate : candidates) {
-            try {
-                Message message = candidate.deserialize(data);
-                if (message instanceof ConnectC2S) {
-                    serializer = candidate;
-                    return message;
-                }
-            } catch (SerializationException ignored) {
-            }
+    protected void checkFrameSize(int size) throws IOException {
+        if (size < 0 || size > maxFrameSize) {
+            throw new IOException("Invalid message length: " + size + " (max " + maxFrameSize + ")");
         }
-        throw new IllegalArgumentException("Failed to detect serializer");
     }
 
-    private byte[] readFully(int size) throws IOException {
-        byte[] data = new byte[size];
-        int offset = 0;
-        while (offset < size) {
-            int read = inputStream.read(data, offset, size - offset);
-            if (read == -1) {
-                return offset == 0 ? null : throwUnexpectedEof(size, offset);
-            }
-            offset += read;
+    protected Message decode(int prefix, byte[] data, int offset, int length) {
+        if (!FrameCompressor.isCompressed(prefix)) {
+            return decode(data, offset, length);
+        }
+        FrameCompressor current = compressor;
+        if (current == null) {
+            throw new SerializationException("Compressed frame before compression was negotiated");
+        }
+        byte[] payload = current.decompress(data, offset, length, maxFrameSize);
+        return decode(payload, 0, payload.length);
+    }
+
+    protected Message decode(byte[] data, int offset, int length) {
+        lastReadAt = System.nanoTime();
+        if (serializer != null) {
+            return serializer.deserialize(data, offset, length);
+        }
+        Serializer detected = serializers.detect(data, offset, length);
+        if (detected == null) {
+            throw new SerializationException("Unsupported wire format");
+        }
+        Message message = detected.deserialize(data, offset, length);
+        if (!(message instanceof ConnectC2S) && !(message instanceof ResumeC2S)) {
+            throw new SerializationException("Expected login or resume, got " + message.getClass().getSimpleName());
         }
-        return data;
+        serializer = detected;
+        return message;
     }
 
-    private byte[] throwUnexpectedEof(int expected, int actual) throws EOFException {
-        throw new EOFException("Unexpected end of stream: expected " + expected + " bytes, got " + actual);
+    protected record QueuedFrame(OutgoingFrame frame, long enqueuedAt) {
     }
 }
@@ -0,0 +1,6 @@
+package labs.network.server;
+
+public enum IoModel {
+    THREAD,
+    SELECTOR
+}
@@ -0,0 +1,53 @@
+package labs.network.server;
+
+public class LocalBus implements ClusterBus {
+    private final String nodeId;
+    private Listener listener;
+
+    public LocalBus(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public boolean isClustered() {
+        return false;
+    }
+
+    @Override
+    public boolean isSequencer() {
+        return true;
+    }
+
+    @Override
+    public int getConnectedPeers() {
+        return 0;
+    }
+
+    @Override
+    public void publish(ClusterEvent event) {
+    }
+
+    @Override
+    public boolean sendToSequencer(ClusterEvent event) {
+        listener.onClusterEvent(nodeId, event);
+        return true;
+    }
+
+    @Override
+    public void sendTo(String nodeId, ClusterEvent event) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
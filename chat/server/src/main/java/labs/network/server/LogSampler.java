@@ -0,0 +1,29 @@
+package labs.network.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LogSampler {
+    private final Logger logger;
+    private final int rate;
+    private final AtomicLong counter = new AtomicLong();
+
+    public LogSampler(String category, Map<String, Integer> rates) {
+        this.logger = LogManager.getLogger("labs.network.server." + category);
+        this.rate = Math.max(1, rates.getOrDefault(category, 1));
+    }
+
+    public boolean isInfoEnabled() {
+        if (!logger.isInfoEnabled()) {
+            return false;
+        }
+        return rate == 1 || counter.getAndIncrement() % rate == 0;
+    }
+
+    public Logger logger() {
+        return logger;
+    }
+}
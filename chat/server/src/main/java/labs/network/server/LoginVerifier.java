@@ -0,0 +1,118 @@
+package labs.network.server;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class LoginVerifier {
+    private static final int MAX_CACHED_CREDENTIALS = 100_000;
+    // Logins run on virtual connection threads, so a thread-local Mac would be created per connection.
+    private static final int MAC_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    private final PasswordHasher hasher;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CachedCredential> cache = new ConcurrentHashMap<>();
+    private final long cacheTtlNanos;
+    private final SecretKeySpec cacheKey;
+    private final BlockingQueue<Mac> cacheMacs = new ArrayBlockingQueue<>(MAC_POOL_SIZE);
+
+    public LoginVerifier(ServerConfig config) {
+        this.hasher = new PasswordHasher(config.passwordIterations);
+        int threads = Math.max(1, config.loginThreads);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.loginQueueCapacity)),
+                Thread.ofPlatform().name("login-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.cacheTtlNanos = TimeUnit.SECONDS.toNanos(config.credentialCacheSeconds);
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.cacheKey = new SecretKeySpec(key, "HmacSHA256");
+    }
+
+    public CompletableFuture<Boolean> verify(UserState user, String password) {
+        if (!user.hasPassword && password.isEmpty()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        byte[] fingerprint = fingerprint(user.name, password);
+        if (isCached(user.name, fingerprint)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            boolean ok = user.testPassword(password, hasher);
+            if (ok && cacheTtlNanos > 0) {
+                remember(user.name, fingerprint);
+            }
+            return ok;
+        }, executor);
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private boolean isCached(String name, byte[] fingerprint) {
+        CachedCredential cached = cache.get(name);
+        if (cached == null) {
+            return false;
+        }
+        if (System.nanoTime() - cached.expiresAt() > 0) {
+            cache.remove(name, cached);
+            return false;
+        }
+        return MessageDigest.isEqual(cached.fingerprint(), fingerprint);
+    }
+
+    private void remember(String name, byte[] fingerprint) {
+        if (cache.size() >= MAX_CACHED_CREDENTIALS) {
+            long now = System.nanoTime();
+            cache.values().removeIf(cached -> now - cached.expiresAt() > 0);
+            if (cache.size() >= MAX_CACHED_CREDENTIALS) {
+                cache.clear();
+            }
+        }
+        cache.put(name, new CachedCredential(fingerprint, System.nanoTime() + cacheTtlNanos));
+    }
+
+    private byte[] fingerprint(String name, String password) {
+        Mac mac = cacheMacs.poll();
+        if (mac == null) {
+            mac = newMac();
+        }
+        try {
+            mac.update(name.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            mac.reset();
+            cacheMacs.offer(mac);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(cacheKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private record CachedCredential(byte[] fingerprint, long expiresAt) {
+    }
+}
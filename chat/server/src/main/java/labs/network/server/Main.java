@@ -1,22 +1,97 @@
 package labs.network.server;
 
+import org.apache.logging.log4j.LogManager;
+
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Locale;
 import java.util.Properties;
 
 public class Main {
-    private static final int DEFAULT_PORT = 6666;
-
-    private static final Path SAVE_PATH = Path.of("chat.bin");
-
     public static void main(String[] args) {
         Properties properties = loadProperties();
-        int port = parseIntProperty(properties, "port", DEFAULT_PORT);
-        boolean loggingEnabled = Boolean.parseBoolean(properties.getProperty("loggingEnabled", "true"));
+        ServerConfig config = new ServerConfig();
+        config.port = parseIntProperty(properties, "port", config.port);
+        config.savePath = Path.of(properties.getProperty("savePath", config.savePath.toString()).strip());
+        config.loggingEnabled = Boolean.parseBoolean(properties.getProperty("loggingEnabled", "true"));
+        config.ioModel = parseEnumProperty(properties, "ioModel", config.ioModel);
+        config.selectorThreads = parseIntProperty(properties, "selectorThreads", config.selectorThreads);
+        config.statsInterval = parseIntProperty(properties, "statsInterval", config.statsInterval);
+        config.maxFrameSize = parseIntProperty(properties, "maxFrameSize", config.maxFrameSize);
+        config.sendQueueCapacity = parseIntProperty(properties, "sendQueueCapacity", config.sendQueueCapacity);
+        config.overflowPolicy = parseEnumProperty(properties, "overflowPolicy", config.overflowPolicy);
+        config.snapshotInterval = parseIntProperty(properties, "snapshotInterval", config.snapshotInterval);
+        config.historySize = parseIntProperty(properties, "historySize", config.historySize);
+        config.maxRoomsPerUser = parseIntProperty(properties, "maxRoomsPerUser", config.maxRoomsPerUser);
+        config.metricsPort = parseIntProperty(properties, "metricsPort", config.metricsPort);
+        config.passwordIterations = parseIntProperty(properties, "passwordIterations", config.passwordIterations);
+        config.loginThreads = parseIntProperty(properties, "loginThreads", config.loginThreads);
+        config.loginQueueCapacity = parseIntProperty(properties, "loginQueueCapacity", config.loginQueueCapacity);
+        config.credentialCacheSeconds = parseIntProperty(properties, "credentialCacheSeconds", config.credentialCacheSeconds);
+        config.sessionResumeSeconds = parseIntProperty(properties, "sessionResumeSeconds", config.sessionResumeSeconds);
+        config.presenceLogSize = parseIntProperty(properties, "presenceLogSize", config.presenceLogSize);
+        config.userListPageSize = parseIntProperty(properties, "userListPageSize", config.userListPageSize);
+        config.clusterNode = properties.getProperty("clusterNode", config.clusterNode).strip();
+        config.clusterBindAddress = properties.getProperty("clusterBindAddress", config.clusterBindAddress).strip();
+        config.clusterPort = parseIntProperty(properties, "clusterPort", config.clusterPort);
+        config.clusterSecret = properties.getProperty("clusterSecret", config.clusterSecret).strip();
+        for (String peer : properties.getProperty("clusterPeers", "").split(",")) {
+            if (!peer.isBlank()) {
+                config.clusterPeers.add(peer.strip());
+            }
+        }
+        config.drainTimeoutSeconds = parseIntProperty(properties, "drainTimeoutSeconds", config.drainTimeoutSeconds);
+        config.drainJitterMillis = parseIntProperty(properties, "drainJitterMillis", config.drainJitterMillis);
+        config.reusePort = Boolean.parseBoolean(properties.getProperty("reusePort", "false").strip());
+        config.messageRateLimit = parseIntProperty(properties, "messageRateLimit", config.messageRateLimit);
+        config.messageBurst = parseIntProperty(properties, "messageBurst", config.messageBurst);
+        config.globalMessageRateLimit = parseIntProperty(properties, "globalMessageRateLimit", config.globalMessageRateLimit);
+        config.globalMessageBurst = parseIntProperty(properties, "globalMessageBurst", config.globalMessageBurst);
+        config.rateLimitPolicy = parseEnumProperty(properties, "rateLimitPolicy", config.rateLimitPolicy);
+        config.rateLimitMaxDelayMillis = parseIntProperty(properties, "rateLimitMaxDelayMillis", config.rateLimitMaxDelayMillis);
+        config.loginTimeoutSeconds = parseIntProperty(properties, "loginTimeoutSeconds", config.loginTimeoutSeconds);
+        config.heartbeatIntervalSeconds = parseIntProperty(properties, "heartbeatIntervalSeconds", config.heartbeatIntervalSeconds);
+        config.heartbeatMisses = parseIntProperty(properties, "heartbeatMisses", config.heartbeatMisses);
+        config.tlsPort = parseIntProperty(properties, "tlsPort", config.tlsPort);
+        config.tlsKeyStore = properties.getProperty("tlsKeyStore", config.tlsKeyStore).strip();
+        config.tlsKeyStorePassword = properties.getProperty("tlsKeyStorePassword", config.tlsKeyStorePassword).strip();
+        config.tlsKeyStoreType = properties.getProperty("tlsKeyStoreType", config.tlsKeyStoreType).strip();
+        String tlsProtocols = properties.getProperty("tlsProtocols", "").strip();
+        if (!tlsProtocols.isEmpty()) {
+            config.tlsProtocols.clear();
+            for (String protocol : tlsProtocols.split(",")) {
+                if (!protocol.isBlank()) {
+                    config.tlsProtocols.add(protocol.strip());
+                }
+            }
+        }
+        config.tlsSessionCacheSize = parseIntProperty(properties, "tlsSessionCacheSize", config.tlsSessionCacheSize);
+        config.tlsSessionTimeoutSeconds = parseIntProperty(properties, "tlsSessionTimeoutSeconds", config.tlsSessionTimeoutSeconds);
+        String serializers = properties.getProperty("serializers", "").strip();
+        if (!serializers.isEmpty()) {
+            config.serializers.clear();
+            for (String serializer : serializers.split(",")) {
+                if (!serializer.isBlank()) {
+                    config.serializers.add(serializer.strip().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        config.compression = parseEnumProperty(properties, "compression", config.compression);
+        config.compressionThreshold = parseIntProperty(properties, "compressionThreshold", config.compressionThreshold);
+        config.compressionLevel = parseIntProperty(properties, "compressionLevel", config.compressionLevel);
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("logSampling.")) {
+                config.logSampling.put(key.substring("logSampling.".length()), parseIntProperty(properties, key, 1));
+            }
+        }
 
-        Server server = new Server(SAVE_PATH, port, loggingEnabled);
+        Server server = new Server(config);
+        Runtime.getRuntime().addShutdownHook(Thread.ofPlatform().name("drain").unstarted(() -> {
+            server.drain();
+            LogManager.shutdown();
+        }));
         try {
             server.start();
         } catch (IOException e) {
@@ -54,4 +129,16 @@ public class Main {
             return defaultValue;
         }
     }
+
+    private static <E extends Enum<E>> E parseEnumProperty(Properties properties, String key, E defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(defaultValue.getDeclaringClass(), value.strip().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package labs.network.server;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class MessageHistory implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicReferenceArray<ChatMessage> slots;
+    private volatile int nextIndex = 0;
+
+    public MessageHistory(int capacity) {
+        this.slots = new AtomicReferenceArray<>(Math.max(1, capacity));
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    public int getNextIndex() {
+        return nextIndex;
+    }
+
+    void add(ChatMessage msg) {
+        slots.set(slot(msg.index()), msg);
+        nextIndex = msg.index() + 1;
+    }
+
+    MessageHistory resize(int capacity) {
+        if (capacity == capacity()) {
+            return this;
+        }
+        MessageHistory resized = new MessageHistory(capacity);
+        for (ChatMessage msg : readFrom(0).messages()) {
+            resized.add(msg);
+        }
+        return resized;
+    }
+
+    public Slice readFrom(int fromIndex) {
+        int end = nextIndex;
+        int start = Math.max(Math.max(fromIndex, end - capacity()), 0);
+        List<ChatMessage> result = new ArrayList<>(Math.max(end - start, 0));
+        int missed = 0;
+        for (int i = start; i < end; i++) {
+            ChatMessage msg = slots.get(slot(i));
+            if (msg == null) {
+                continue;
+            }
+            if (msg.index() == i) {
+                result.add(msg);
+            } else if (msg.index() > i) {
+                // A writer lapped the copy; an older or empty slot is a gap left by the sequencer instead.
+                missed += 1;
+            }
+        }
+        return new Slice(result, missed);
+    }
+
+    private int slot(int index) {
+        return index % slots.length();
+    }
+
+    public record Slice(List<ChatMessage> messages, int missed) {
+    }
+}
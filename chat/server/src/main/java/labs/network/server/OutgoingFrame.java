@@ -0,0 +1,56 @@
+package labs.network.server;
+
+import labs.network.protocol.Message;
+import labs.network.protocol.Serializer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class OutgoingFrame {
+    private final Message message;
+    private final Map<Class<? extends Serializer>, byte[]> encoded;
+    private final boolean droppable;
+    private final boolean closing;
+
+    private OutgoingFrame(Message message, boolean shared, boolean droppable, boolean closing) {
+        this.message = message;
+        this.encoded = shared ? new ConcurrentHashMap<>(4) : null;
+        this.droppable = droppable;
+        this.closing = closing;
+    }
+
+    public static OutgoingFrame of(Message message) {
+        return new OutgoingFrame(message, false, false, false);
+    }
+
+    public static OutgoingFrame shared(Message message) {
+        return new OutgoingFrame(message, true, false, false);
+    }
+
+    public static OutgoingFrame chatEvent(Message message) {
+        return new OutgoingFrame(message, true, true, false);
+    }
+
+    public static OutgoingFrame closing(Message message) {
+        return new OutgoingFrame(message, false, false, true);
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public boolean isDroppable() {
+        return droppable;
+    }
+
+    public boolean isClosing() {
+        return closing;
+    }
+
+    byte[] encode(Serializer serializer) {
+        if (encoded == null || serializer.isStateful()) {
+            return serializer.serialize(message);
+        }
+        return encoded.computeIfAbsent(serializer.getClass(), k -> serializer.serialize(message));
+    }
+}
@@ -0,0 +1,7 @@
+package labs.network.server;
+
+public enum OverflowPolicy {
+    DROP_OLDEST,
+    DISCONNECT,
+    COALESCE
+}
@@ -0,0 +1,104 @@
+package labs.network.server;
+
+import labs.network.protocol.UserInfo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class PresenceIndex {
+    private final NavigableMap<String, String> online = new ConcurrentSkipListMap<>();
+    private final Change[] log;
+    private final long origin;
+    private long version;
+
+    public PresenceIndex(int logCapacity) {
+        this.log = new Change[Math.max(1, logCapacity)];
+        // Every index counts from its own random origin, so a version handed out by a previous
+        // server run or by another cluster node falls outside this range and gets a full page.
+        this.origin = (long) ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE) << 32;
+        this.version = origin;
+    }
+
+    public synchronized void setOnline(String name, String clientType) {
+        online.put(name, clientType);
+        append(new Change(version + 1, name, clientType, true));
+    }
+
+    public synchronized void setOffline(String name) {
+        if (online.remove(name) != null) {
+            append(new Change(version + 1, name, null, false));
+        }
+    }
+
+    public boolean isOnline(String name) {
+        return online.containsKey(name);
+    }
+
+    public int size() {
+        return online.size();
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public List<UserInfo> getOnlineUsers() {
+        return page(null, 0).users();
+    }
+
+    public Page page(String after, int limit) {
+        long snapshotVersion = getVersion();
+        Map<String, String> view = after != null ? online.tailMap(after, false) : online;
+        List<UserInfo> users = new ArrayList<>(limit > 0 ? Math.min(limit, online.size()) : online.size());
+        String next = null;
+        for (Map.Entry<String, String> entry : view.entrySet()) {
+            if (limit > 0 && users.size() == limit) {
+                next = users.getLast().name();
+                break;
+            }
+            users.add(new UserInfo(entry.getKey(), entry.getValue()));
+        }
+        return new Page(snapshotVersion, users, next);
+    }
+
+    public synchronized Delta changesSince(long sinceVersion) {
+        if (sinceVersion < origin || sinceVersion > version || version - sinceVersion > log.length) {
+            return null;
+        }
+        Map<String, Change> latest = new LinkedHashMap<>();
+        for (long v = sinceVersion + 1; v <= version; v++) {
+            Change change = log[(int) (v % log.length)];
+            latest.remove(change.name());
+            latest.put(change.name(), change);
+        }
+        List<UserInfo> joined = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+        for (Change change : latest.values()) {
+            if (change.online()) {
+                joined.add(new UserInfo(change.name(), change.clientType()));
+            } else {
+                left.add(change.name());
+            }
+        }
+        return new Delta(version, joined, left);
+    }
+
+    private void append(Change change) {
+        version = change.version();
+        log[(int) (version % log.length)] = change;
+    }
+
+    public record Page(long version, List<UserInfo> users, String next) {
+    }
+
+    public record Delta(long version, List<UserInfo> joined, List<String> left) {
+    }
+
+    private record Change(long version, String name, String clientType, boolean online) {
+    }
+}
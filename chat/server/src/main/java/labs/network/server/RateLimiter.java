@@ -0,0 +1,33 @@
+package labs.network.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RateLimiter {
+    private final long interval;
+    private final long tolerance;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    public RateLimiter(int ratePerSecond, int burst) {
+        this.interval = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ratePerSecond);
+        this.tolerance = interval * Math.max(1, burst);
+    }
+
+    public long reserve(long now, long maxWaitNanos) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, now) + interval;
+            long wait = next - now - tolerance;
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+    public void cancel(long now) {
+        theoreticalArrival.updateAndGet(arrival -> Math.max(arrival - interval, now));
+    }
+}
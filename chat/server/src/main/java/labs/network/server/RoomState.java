@@ -0,0 +1,76 @@
+package labs.network.server;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class RoomState implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public final String name;
+    private MessageHistory history;
+    private int messageIndex = 0;
+    private transient Set<UserState> subscribers = ConcurrentHashMap.newKeySet();
+
+    public RoomState(String name, int historySize) {
+        this.name = name;
+        this.history = new MessageHistory(historySize);
+    }
+
+    public MessageHistory getHistory() {
+        return history;
+    }
+
+    public Set<UserState> getSubscribers() {
+        return subscribers;
+    }
+
+    synchronized ChatMessage addMessage(String from, String text, ChatJournal journal) {
+        ChatMessage msg = new ChatMessage(from, text, messageIndex);
+        history.add(msg);
+        messageIndex += 1;
+        if (journal != null) {
+            journal.appendRoomMessage(name, msg);
+        }
+        return msg;
+    }
+
+    synchronized boolean addSequencedMessage(ChatMessage msg, ChatJournal journal) {
+        if (msg.index() < messageIndex) {
+            return false;
+        }
+        history.add(msg);
+        messageIndex = msg.index() + 1;
+        if (journal != null) {
+            journal.appendRoomMessage(name, msg);
+        }
+        return true;
+    }
+
+    synchronized void applyMessage(ChatMessage msg) {
+        if (msg.index() >= messageIndex) {
+            history.add(msg);
+            messageIndex = msg.index() + 1;
+        }
+    }
+
+    synchronized void resizeHistory(int historySize) {
+        history = history.resize(historySize);
+    }
+
+    @Serial
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        subscribers = ConcurrentHashMap.newKeySet();
+    }
+}
@@ -0,0 +1,169 @@
+package labs.network.server;
+
+import labs.network.protocol.Message;
+import labs.network.protocol.SerializerRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class SelectorLoop implements Runnable {
+    private static final Logger LOGGER = LogManager.getLogger(SelectorLoop.class);
+
+    private final Server server;
+    private final ServerConfig config;
+    private final ServerMetrics metrics;
+    private final BufferPool bufferPool;
+    private final SerializerRegistry serializers;
+    private final Selector selector;
+    private final Queue<ChannelConnection> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final Queue<ChannelConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final List<Message> incoming = new ArrayList<>();
+
+    SelectorLoop(Server server, ServerConfig config, ServerMetrics metrics, BufferPool bufferPool,
+                 SerializerRegistry serializers) throws IOException {
+        this.server = server;
+        this.config = config;
+        this.metrics = metrics;
+        this.bufferPool = bufferPool;
+        this.serializers = serializers;
+        this.selector = Selector.open();
+    }
+
+    ChannelConnection register(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        ChannelConnection conn = new ChannelConnection(channel, this, config, metrics, bufferPool, serializers);
+        pendingRegistrations.add(conn);
+        selector.wakeup();
+        return conn;
+    }
+
+    void scheduleWrite(ChannelConnection conn) {
+        pendingWrites.add(conn);
+        selector.wakeup();
+    }
+
+    void execute(Runnable task) {
+        pendingTasks.add(task);
+        selector.wakeup();
+    }
+
+    void wakeup() {
+        selector.wakeup();
+    }
+
+    void stop() {
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.error("Error closing selector", e);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                registerPending();
+                runPendingTasks();
+                flushPending();
+                processSelectedKeys();
+            }
+        } catch (ClosedSelectorException ignored) {
+        } catch (IOException e) {
+            LOGGER.error("Selector loop failed", e);
+        }
+    }
+
+    private void registerPending() {
+        ChannelConnection conn;
+        while ((conn = pendingRegistrations.poll()) != null) {
+            try {
+                SelectionKey key = conn.channel.register(selector, SelectionKey.OP_READ, conn);
+                conn.attach(key);
+            } catch (IOException e) {
+                server.closeConnection(conn);
+            }
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void flushPending() {
+        ChannelConnection conn;
+        while ((conn = pendingWrites.poll()) != null) {
+            if (conn.isClosed()) {
+                continue;
+            }
+            try {
+                conn.flush();
+            } catch (IOException | RuntimeException e) {
+                server.closeConnection(conn);
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            ChannelConnection conn = (ChannelConnection) key.attachment();
+            try {
+                if (key.isValid() && key.isWritable()) {
+                    conn.flush();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    handleReadable(conn);
+                }
+            } catch (IOException | RuntimeException e) {
+                server.closeConnection(conn);
+            }
+        }
+    }
+
+    private void handleReadable(ChannelConnection conn) throws IOException {
+        incoming.clear();
+        boolean open;
+        try {
+            open = conn.read(incoming);
+        } catch (IOException | RuntimeException e) {
+            dispatchIncoming(conn);
+            throw e;
+        }
+        if (!dispatchIncoming(conn)) {
+            return;
+        }
+        if (!open) {
+            if (server.connectionLog.isInfoEnabled()) {
+                server.connectionLog.logger().info("Disconnected: {}", conn.getRemoteAddress());
+            }
+            server.closeConnection(conn);
+        }
+    }
+
+    private boolean dispatchIncoming(ChannelConnection conn) {
+        for (Message message : incoming) {
+            if (!server.handleMessage(conn, message)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -3,13 +3,23 @@ package labs.network.server;
 import labs.network.protocol.*;
 import labs.network.protocol.c2s.ChatMessageC2S;
 import labs.network.protocol.c2s.ConnectC2S;
+import labs.network.protocol.c2s.JoinRoomC2S;
+import labs.network.protocol.c2s.LeaveRoomC2S;
 import labs.network.protocol.c2s.ListUsersC2S;
 import labs.network.protocol.c2s.LogoutC2S;
+import labs.network.protocol.c2s.PingC2S;
+import labs.network.protocol.c2s.ResumeC2S;
+import labs.network.protocol.c2s.RoomMessageC2S;
 import labs.network.protocol.s2c.EventMessageS2C;
 import labs.network.protocol.s2c.ListUsersS2C;
 import labs.network.protocol.s2c.LoginResposeS2C;
 import labs.network.protocol.s2c.LogoutResponseS2C;
 import labs.network.protocol.s2c.MessageResponseS2C;
+import labs.network.protocol.s2c.MissedMessagesS2C;
+import labs.network.protocol.s2c.PongS2C;
+import labs.network.protocol.s2c.ReconnectEventS2C;
+import labs.network.protocol.s2c.RoomMessageEventS2C;
+import labs.network.protocol.s2c.RoomResponseS2C;
 import labs.network.protocol.s2c.UserLoginEventS2C;
 import labs.network.protocol.s2c.UserLogoutEventS2C;
 import org.apache.logging.log4j.Level;
@@ -17,170 +27,658 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.config.Configurator;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.StandardSocketOptions;
 import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Server {
     private static final Logger LOGGER = LogManager.getLogger(Server.class);
-    private static final int SAVE_TIMEOUT = 2;
 
+    private final ServerConfig config;
     private final Path savePath;
     private final int port;
     private ChatState chat;
-    private Thread saveThread;
+    private ChatJournal journal;
+    private long snapshotRecords = 0;
+    private Thread snapshotThread;
+    private Thread statsThread;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final WriterStats writerStats = metrics.getWriterStats();
+    private MetricsEndpoint metricsEndpoint;
+    private final LoginVerifier loginVerifier;
+    private SessionTokens sessionTokens;
+    private final PresenceIndex presence;
+    private final ClusterBus cluster;
+    private final Map<String, Set<String>> remoteUsers = new ConcurrentHashMap<>();
+    private final RateLimiter globalLimiter;
+    private final ScheduledExecutorService delayedMessages =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("rate-limit-delay").daemon().factory());
+    private final TimerWheel idleTimers;
+    private final long loginTimeout;
+    private final long idleTimeout;
+    private final Map<String, DetachedSession> detachedSessions = new ConcurrentHashMap<>();
+    private Thread sessionReaperThread;
+    final LogSampler connectionLog;
+    private final LogSampler sessionLog;
+    private final LogSampler chatLog;
+    private final BufferPool bufferPool = new BufferPool();
+    private final SerializerRegistry serializers;
     private final Map<String, UserState> sessions = new ConcurrentHashMap<>();
 
     private ServerSocket serverSocket;
-    private final Map<Socket, Connection> connections = new ConcurrentHashMap<>();
-    private boolean running = false;
+    private SSLServerSocket tlsServerSocket;
+    private ServerSocketChannel serverChannel;
+    private SelectorLoop[] selectorLoops;
+    private int nextSelectorLoop = 0;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = false;
+    private volatile boolean draining = false;
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+    private FileChannel stateLock;
 
-    public Server(Path savePath, int port, boolean loggingEnabled) {
-        this.savePath = savePath;
-        this.port = port;
-        if (!loggingEnabled) {
+    public Server(ServerConfig config) {
+        this.config = config;
+        this.savePath = config.savePath;
+        this.port = config.port;
+        if (!config.loggingEnabled) {
             Configurator.setRootLevel(Level.OFF);
         }
-        loadChat();
+        this.connectionLog = new LogSampler("connection", config.logSampling);
+        this.sessionLog = new LogSampler("session", config.logSampling);
+        this.chatLog = new LogSampler("chat", config.logSampling);
+        this.loginVerifier = new LoginVerifier(config);
+        this.presence = new PresenceIndex(config.presenceLogSize);
+        this.serializers = SerializerRegistry.defaults().retain(config.serializers);
+        if (serializers.names().isEmpty()) {
+            throw new IllegalArgumentException("No known serializers enabled: " + config.serializers);
+        }
+        this.globalLimiter = config.globalMessageRateLimit > 0
+                ? new RateLimiter(config.globalMessageRateLimit, config.globalMessageBurst)
+                : null;
+        this.loginTimeout = TimeUnit.SECONDS.toNanos(config.loginTimeoutSeconds);
+        this.idleTimeout = TimeUnit.SECONDS.toNanos((long) config.heartbeatIntervalSeconds * Math.max(1, config.heartbeatMisses));
+        this.idleTimers = loginTimeout > 0 || idleTimeout > 0 ? new TimerWheel(100, 512) : null;
+        this.cluster = config.clusterPort > 0 ? new TcpClusterBus(config) : new LocalBus(config.clusterNode);
     }
 
     public void loadChat() {
+        chat = readSnapshot();
+        chat.resizeHistory(config.historySize);
+        journal = new ChatJournal(ChatJournal.pathFor(savePath));
+        try {
+            journal.replayInto(chat);
+            journal.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chat.setJournal(journal);
+        boolean newSecret = chat.ensureSessionSecret();
+        sessionTokens = new SessionTokens(config.clusterSecret.isEmpty()
+                ? chat.getSessionSecret()
+                : SessionTokens.deriveSecret(config.clusterSecret));
+        if (newSecret) {
+            saveChat();
+        }
+    }
+
+    private ChatState readSnapshot() {
         if (Files.exists(savePath)) {
             try (InputStream stream = Files.newInputStream(savePath)) {
                 ObjectInputStream in = new ObjectInputStream(stream);
-                chat = (ChatState) in.readObject();
-                return;
+                return (ChatState) in.readObject();
             } catch (IOException e) {
                 LOGGER.error(e);
             } catch (ClassNotFoundException e) {
                 throw new RuntimeException(e);
             }
         }
-        chat = new ChatState();
+        return new ChatState(config.historySize);
     }
 
-    public void saveChat() {
-        try (OutputStream stream = Files.newOutputStream(savePath)) {
-            ObjectOutputStream out = new ObjectOutputStream(stream);
-            out.writeObject(chat);
+    public synchronized void saveChat() {
+        long records = journal.getAppendedRecords();
+        Path tempPath = savePath.resolveSibling(savePath.getFileName() + ".tmp");
+        try {
+            journal.rotate();
+            try (FileOutputStream stream = new FileOutputStream(tempPath.toFile())) {
+                ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(stream));
+                out.writeObject(chat);
+                out.flush();
+                stream.getFD().sync();
+            }
+            Files.move(tempPath, savePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.dropRotated();
+            snapshotRecords = records;
         } catch (IOException e) {
             LOGGER.error(e);
         }
     }
 
+    private void snapshotLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                TimeUnit.SECONDS.sleep(config.snapshotInterval);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (journal.getAppendedRecords() != snapshotRecords) {
+                saveChat();
+            }
+        }
+    }
+
     public void start() throws IOException {
-        this.serverSocket = new ServerSocket();
-        serverSocket.setReuseAddress(true);
-        serverSocket.bind(new InetSocketAddress(port));
+        if (config.ioModel == IoModel.SELECTOR) {
+            this.serverChannel = ServerSocketChannel.open();
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            if (config.reusePort && serverChannel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                serverChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            serverChannel.bind(new InetSocketAddress(port));
+        } else {
+            this.serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            if (config.reusePort && serverSocket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                serverSocket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            serverSocket.bind(new InetSocketAddress(port));
+        }
+        if (config.tlsPort > 0) {
+            bindTls();
+        }
+
+        acquireStateLock();
+        loadChat();
+        if (serverChannel != null) {
+            startSelectorLoops();
+        }
 
-        LOGGER.info("Server started on port {}", port);
+        LOGGER.info("Server started on port {} ({}, serializers: {})", port, config.ioModel, String.join(", ", serializers.names()));
 
-        this.saveThread = Thread.ofVirtual().start(() -> {
-            while (!Thread.currentThread().isInterrupted()) {
-                saveChat();
-                try {
-                    TimeUnit.SECONDS.sleep(SAVE_TIMEOUT);
-                } catch (InterruptedException ignored) {
-                    Thread.currentThread().interrupt();
-                    return;
+        if (config.snapshotInterval > 0) {
+            this.snapshotThread = Thread.ofVirtual().start(this::snapshotLoop);
+        }
+
+        if (config.metricsPort > 0) {
+            startMetrics();
+        }
+
+        cluster.start(new ClusterListener());
+
+        if (config.sessionResumeSeconds > 0) {
+            this.sessionReaperThread = Thread.ofVirtual().start(this::sessionReaperLoop);
+        }
+
+        if (config.statsInterval > 0) {
+            this.statsThread = Thread.ofVirtual().start(this::statsLoop);
+        }
+
+        if (idleTimers != null) {
+            idleTimers.start("idle-timer");
+        }
+
+        running = true;
+        if (tlsServerSocket != null) {
+            Thread.ofPlatform().name("tls-accept").start(this::tlsAcceptLoop);
+        }
+        eventLoop();
+    }
+
+    private void sessionReaperLoop() {
+        long timeout = TimeUnit.SECONDS.toNanos(config.sessionResumeSeconds);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                TimeUnit.SECONDS.sleep(1);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long now = System.nanoTime();
+            for (Map.Entry<String, DetachedSession> entry : detachedSessions.entrySet()) {
+                DetachedSession detached = entry.getValue();
+                if (now - detached.detachedAt() >= timeout && detachedSessions.remove(entry.getKey(), detached)) {
+                    userLeft(detached.user());
                 }
             }
+        }
+    }
+
+    private void startMetrics() throws IOException {
+        metrics.gauge("chat_connections", connections::size);
+        metrics.gauge("chat_sessions", sessions::size);
+        metrics.gauge("chat_login_queue_depth", loginVerifier::getQueueDepth);
+        metrics.gauge("chat_online_users", presence::size);
+        metrics.gauge("chat_cluster_peers", cluster::getConnectedPeers);
+        metrics.gauge("chat_buffer_pool_bytes", bufferPool::getRetainedBytes);
+        metrics.gauge("chat_send_queue_depth", () -> {
+            long depth = 0;
+            for (Connection conn : connections) {
+                depth += conn.getQueueDepth();
+            }
+            return depth;
         });
+        metricsEndpoint = new MetricsEndpoint(metrics);
+        metricsEndpoint.start(config.metricsPort);
+        LOGGER.info("Metrics available at http://localhost:{}/metrics", config.metricsPort);
+    }
 
-        running = true;
-        eventLoop();
+    private void statsLoop() {
+        long lastFlushes = writerStats.getFlushes();
+        long lastMessages = writerStats.getMessages();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                TimeUnit.SECONDS.sleep(config.statsInterval);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long flushes = writerStats.getFlushes();
+            long messages = writerStats.getMessages();
+            long deltaFlushes = flushes - lastFlushes;
+            long deltaMessages = messages - lastMessages;
+            if (deltaFlushes > 0) {
+                LOGGER.info("Writer: {} flushes/sec, {} messages/sec, avg batch {}",
+                        deltaFlushes / config.statsInterval,
+                        deltaMessages / config.statsInterval,
+                        String.format(Locale.ROOT, "%.2f", (double) deltaMessages / deltaFlushes));
+            }
+            logQueueDepth();
+            lastFlushes = flushes;
+            lastMessages = messages;
+        }
+    }
+
+    private void logQueueDepth() {
+        int maxDepth = 0;
+        long totalDepth = 0;
+        for (Connection conn : connections) {
+            int depth = conn.getQueueDepth();
+            maxDepth = Math.max(maxDepth, depth);
+            totalDepth += depth;
+        }
+        if (totalDepth > 0 || writerStats.getDropped() > 0) {
+            LOGGER.info("Send queues: max depth {}, total {}, dropped {}, slow consumers disconnected {}",
+                    maxDepth, totalDepth, writerStats.getDropped(), writerStats.getOverflowDisconnects());
+        }
+    }
+
+    private void startSelectorLoops() throws IOException {
+        int count = Math.max(1, config.selectorThreads);
+        selectorLoops = new SelectorLoop[count];
+        for (int i = 0; i < count; i++) {
+            selectorLoops[i] = new SelectorLoop(this, config, metrics, bufferPool, serializers);
+            Thread.ofPlatform().name("selector-" + i).start(selectorLoops[i]);
+        }
     }
 
     private void eventLoop() throws IOException {
         try {
             while (running) {
-                handleAccept();
+                if (serverChannel != null) {
+                    handleChannelAccept();
+                } else {
+                    handleAccept();
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                throw e;
             }
         } finally {
-            stop();
+            if (!draining) {
+                stop();
+            }
+        }
+    }
+
+    private void bindTls() throws IOException {
+        SSLContext context = TlsContextFactory.create(config);
+        tlsServerSocket = (SSLServerSocket) context.getServerSocketFactory().createServerSocket();
+        tlsServerSocket.setReuseAddress(true);
+        if (config.reusePort && tlsServerSocket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+            tlsServerSocket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        tlsServerSocket.setEnabledProtocols(config.tlsProtocols.toArray(String[]::new));
+        tlsServerSocket.bind(new InetSocketAddress(config.tlsPort));
+        LOGGER.info("TLS enabled on port {} ({})", config.tlsPort, String.join(", ", config.tlsProtocols));
+    }
+
+    private void tlsAcceptLoop() {
+        while (running) {
+            try {
+                acceptSocket(tlsServerSocket.accept());
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.error("TLS accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void acquireStateLock() throws IOException {
+        Path lockPath = savePath.resolveSibling(savePath.getFileName() + ".lock");
+        stateLock = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (stateLock.tryLock() == null) {
+            LOGGER.info("Waiting for the previous server to release {}", lockPath);
+            stateLock.lock();
+        }
+    }
+
+    public void drain() {
+        if (stopped.get() || draining) {
+            return;
+        }
+        draining = true;
+        running = false;
+        closeListeners();
+        LOGGER.info("Draining {} connections", connections.size());
+        for (Connection conn : connections) {
+            int delay = config.drainJitterMillis > 0 ? ThreadLocalRandom.current().nextInt(config.drainJitterMillis) : 0;
+            conn.send(OutgoingFrame.closing(new ReconnectEventS2C(delay)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.drainTimeoutSeconds);
+        while (System.nanoTime() < deadline && connections.stream().anyMatch(conn -> !conn.isClosed())) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        long pending = connections.stream().filter(conn -> !conn.isClosed()).count();
+        if (pending > 0) {
+            LOGGER.warn("Drain deadline reached, closing {} connections", pending);
+        }
+        stop();
+    }
+
+    private void handleChannelAccept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+        SelectorLoop loop = selectorLoops[nextSelectorLoop];
+        nextSelectorLoop = (nextSelectorLoop + 1) % selectorLoops.length;
+        Connection conn = loop.register(channel);
+        conn.overflowHandler = this::closeConnection;
+        connections.add(conn);
+        checkIdle(conn);
+
+        if (connectionLog.isInfoEnabled()) {
+            connectionLog.logger().info("Connected: {}", conn.getRemoteAddress());
         }
     }
 
     private void handleAccept() throws IOException {
-        Socket clientSocket = serverSocket.accept();
+        acceptSocket(serverSocket.accept());
+    }
+
+    private void acceptSocket(Socket clientSocket) throws IOException {
         clientSocket.setTcpNoDelay(true);
 
-        Connection conn = new Connection(clientSocket);
-        connections.put(clientSocket, conn);
+        SocketConnection conn = new SocketConnection(clientSocket, config, metrics, bufferPool, serializers);
+        conn.overflowHandler = this::closeConnection;
+        connections.add(conn);
+        checkIdle(conn);
         conn.startWriter();
 
-        LOGGER.info("Connected: {}", clientSocket.getRemoteSocketAddress());
+        if (connectionLog.isInfoEnabled()) {
+            connectionLog.logger().info("Connected: {}", clientSocket.getRemoteSocketAddress());
+        }
         Thread.ofVirtual().start(() -> {
             try {
+                if (clientSocket instanceof SSLSocket tlsSocket) {
+                    long start = System.nanoTime();
+                    tlsSocket.startHandshake();
+                    metrics.recordTlsHandshake(System.nanoTime() - start);
+                }
                 handleRead(conn);
-            } catch (IOException e) {
+            } catch (IOException | RuntimeException e) {
                 closeConnection(conn);
             }
         });
     }
 
-    private void handleRead(Connection conn) throws IOException {
+    private void handleRead(SocketConnection conn) throws IOException {
         while (running) {
             Message message = conn.readMessage();
             if (message == null) {
-                LOGGER.info("Disconnected: {}", conn.socket.getRemoteSocketAddress());
+                if (connectionLog.isInfoEnabled()) {
+                    connectionLog.logger().info("Disconnected: {}", conn.getRemoteAddress());
+                }
                 closeConnection(conn);
                 return;
             }
-            try {
-                processIncoming(conn, message);
-            } catch (Exception e) {
-                LOGGER.error(e);
-                conn.sendError("Protocol error");
-                closeConnection(conn);
+            if (!handleMessage(conn, message)) {
                 return;
             }
         }
     }
 
-    private void closeConnection(Connection context) {
-        UserState user = sessions.get(context.sessionId);
-        if (user != null) {
-            disconnect(context);
+    private void checkIdle(Connection conn) {
+        if (idleTimers == null || conn.isClosed()) {
+            return;
         }
-        connections.remove(context.socket);
-        context.close();
+        boolean authenticated = conn.sessionId != null;
+        long timeout = authenticated ? idleTimeout : loginTimeout;
+        long since = authenticated ? conn.lastReadAt : conn.connectedAt;
+        long now = System.nanoTime();
+        if (timeout > 0 && now - since >= timeout) {
+            if (authenticated) {
+                metrics.recordIdleDisconnect();
+            } else {
+                metrics.recordLoginTimeout();
+            }
+            if (connectionLog.isInfoEnabled()) {
+                connectionLog.logger().info("{}: {}", authenticated ? "Heartbeat timeout" : "Login timeout", conn.getRemoteAddress());
+            }
+            closeConnection(conn);
+            return;
+        }
+        long delay = timeout > 0 ? since + timeout - now : Math.max(loginTimeout, idleTimeout);
+        conn.idleCheck = idleTimers.schedule(() -> checkIdle(conn), delay);
     }
 
-    private void stop() {
-        running = false;
+    boolean handleMessage(Connection conn, Message message) {
+        if (conn.holdInbound(message)) {
+            return true;
+        }
+        long wait = throttle(conn, message);
+        if (wait > 0) {
+            conn.pauseInbound();
+            scheduleResume(conn, message, wait);
+            return true;
+        }
+        return wait < 0 || processMessage(conn, message);
+    }
 
-        for (Connection conn : connections.values()) {
-            conn.close();
+    private void scheduleResume(Connection conn, Message delayed, long wait) {
+        delayedMessages.schedule(() -> conn.executeOnReader(() -> resumeInbound(conn, delayed)),
+                wait, TimeUnit.NANOSECONDS);
+    }
+
+    private void resumeInbound(Connection conn, Message delayed) {
+        if (conn.isClosed() || !processMessage(conn, delayed)) {
+            return;
+        }
+        Message message;
+        while ((message = conn.pollHeld()) != null) {
+            long wait = throttle(conn, message);
+            if (wait > 0) {
+                scheduleResume(conn, message, wait);
+                return;
+            }
+            if (wait == 0 && (conn.isClosed() || !processMessage(conn, message))) {
+                return;
+            }
+        }
+    }
+
+    private long throttle(Connection conn, Message message) {
+        if (!(message instanceof ChatMessageC2S) && !(message instanceof RoomMessageC2S)) {
+            return 0;
+        }
+        long wait = reserveSend(conn);
+        if (wait < 0) {
+            metrics.recordRateLimitRejected();
+            conn.replyError(message, "Слишком много сообщений, подождите");
+        } else if (wait > 0) {
+            metrics.recordRateLimitDelay(wait);
+        }
+        return wait;
+    }
+
+    private long reserveSend(Connection conn) {
+        long maxWait = config.rateLimitPolicy == RateLimitPolicy.DELAY
+                ? TimeUnit.MILLISECONDS.toNanos(config.rateLimitMaxDelayMillis)
+                : 0;
+        long now = System.nanoTime();
+        long sessionWait = conn.messageLimiter != null ? conn.messageLimiter.reserve(now, maxWait) : 0;
+        if (sessionWait < 0) {
+            return -1;
+        }
+        long globalWait = globalLimiter != null ? globalLimiter.reserve(now, maxWait) : 0;
+        if (globalWait < 0) {
+            if (conn.messageLimiter != null) {
+                conn.messageLimiter.cancel(now);
+            }
+            return -1;
         }
+        return Math.max(sessionWait, globalWait);
+    }
 
+    private boolean processMessage(Connection conn, Message message) {
+        long start = System.nanoTime();
+        try {
+            processIncoming(conn, message);
+            // Logins finish on the verifier pool and record their own latency when they complete.
+            if (!(message instanceof ConnectC2S)) {
+                metrics.handler(message.getClass().getSimpleName()).record(System.nanoTime() - start);
+            }
+            return true;
+        } catch (Exception e) {
+            LOGGER.error(e);
+            conn.replyError(message, "Protocol error");
+            closeConnection(conn);
+            return false;
+        }
+    }
+
+    void closeConnection(Connection context) {
+        if (context.sessionId != null && !draining) {
+            if (config.sessionResumeSeconds > 0) {
+                detach(context);
+            } else {
+                disconnect(context);
+            }
+        }
+        connections.remove(context);
+        context.close();
+    }
+
+    private void closeListeners() {
         try {
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
             }
+            if (tlsServerSocket != null && !tlsServerSocket.isClosed()) {
+                tlsServerSocket.close();
+            }
+            if (serverChannel != null && serverChannel.isOpen()) {
+                serverChannel.close();
+            }
         } catch (IOException e) {
             LOGGER.error("Error closing server", e);
         }
+    }
+
+    private void stop() {
+        if (!stopped.compareAndSet(false, true)) {
+            return;
+        }
+        running = false;
+
+        for (Connection conn : connections) {
+            conn.close();
+        }
+
+        closeListeners();
+
+        if (selectorLoops != null) {
+            for (SelectorLoop loop : selectorLoops) {
+                loop.stop();
+            }
+        }
+
+        if (statsThread != null) {
+            statsThread.interrupt();
+        }
 
-        if (saveThread != null) {
-            saveThread.interrupt();
+        if (sessionReaperThread != null) {
+            sessionReaperThread.interrupt();
+        }
+
+        if (idleTimers != null) {
+            idleTimers.stop();
+        }
+
+        if (metricsEndpoint != null) {
+            metricsEndpoint.stop();
+        }
+
+        loginVerifier.stop();
+        delayedMessages.shutdownNow();
+        cluster.close();
+
+        if (snapshotThread != null) {
+            snapshotThread.interrupt();
             try {
-                saveThread.join(5000);
+                snapshotThread.join(5000);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
+
+        if (journal != null) {
+            saveChat();
+            journal.close();
+        }
+        if (stateLock != null) {
+            try {
+                stateLock.close();
+            } catch (IOException e) {
+                LOGGER.error("Error releasing state lock", e);
+            }
+        }
+        LOGGER.info("Server stopped");
     }
 
     private void processIncoming(Connection connection, Message message) {
         if (message instanceof ConnectC2S connect) {
-            handleLogin(connection, connect);
+            long start = System.nanoTime();
+            handleLogin(connection, connect).whenComplete((ignored, error) ->
+                    metrics.handler(ConnectC2S.class.getSimpleName()).record(System.nanoTime() - start));
             return;
         }
         if (message instanceof ListUsersC2S listUsers) {
@@ -195,101 +693,376 @@ public class Server {
             handleLogout(connection, logout);
             return;
         }
-        connection.sendError("Неизвестная команда");
+        if (message instanceof ResumeC2S resume) {
+            handleResume(connection, resume);
+            return;
+        }
+        if (message instanceof PingC2S ping) {
+            connection.reply(ping, new PongS2C(ping.getTimestamp()));
+            return;
+        }
+        if (message instanceof JoinRoomC2S joinRoom) {
+            handleJoinRoom(connection, joinRoom);
+            return;
+        }
+        if (message instanceof LeaveRoomC2S leaveRoom) {
+            handleLeaveRoom(connection, leaveRoom);
+            return;
+        }
+        if (message instanceof RoomMessageC2S roomMessage) {
+            handleRoomMessage(connection, roomMessage);
+            return;
+        }
+        connection.replyError(message, "Неизвестная команда");
     }
 
-    private void handleLogin(Connection connection, ConnectC2S command) {
+    private CompletableFuture<?> handleLogin(Connection connection, ConnectC2S command) {
         String name = command.getName().trim();
         String clientType = command.getClientType().trim();
         String password = command.getPassword();
-        if (name.isEmpty()) {
-            connection.sendError("Плохое имя");
-            return;
+        if (name.isEmpty() || !XMLWriter.canEncode(name)) {
+            connection.replyError(command, "Плохое имя");
+            return CompletableFuture.completedFuture(null);
         }
         if (clientType.isEmpty()) {
-            connection.sendError("Надо имя клиента");
-            return;
+            connection.replyError(command, "Надо имя клиента");
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!XMLWriter.canEncode(clientType)) {
+            connection.replyError(command, "Плохое имя клиента");
+            return CompletableFuture.completedFuture(null);
         }
         UserState user = chat.findUser(name);
         if (user == null) {
-            user = chat.newUser(name, password);
-        } else {
-            if (!user.testPassword(password)) {
-                connection.sendError("Неверный пароль");
-                return;
-            }
+            user = chat.newUser(name, clientType);
+        }
+        UserState loginUser = user;
+        byte[] previousHash = user.passwordHash;
+        try {
+            return loginVerifier.verify(user, password).whenComplete((ok, error) -> {
+                if (error != null) {
+                    LOGGER.error("Password verification failed", error);
+                    connection.replyError(command, "Ошибка входа");
+                } else if (!ok) {
+                    connection.replyError(command, "Неверный пароль");
+                } else if (!connection.isClosed()) {
+                    try {
+                        completeLogin(connection, command, loginUser, clientType,
+                                loginUser.passwordHash != previousHash);
+                    } catch (Exception e) {
+                        LOGGER.error(e);
+                        connection.replyError(command, "Protocol error");
+                        closeConnection(connection);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            connection.replyError(command, "Сервер перегружен, попробуйте позже");
+            return CompletableFuture.completedFuture(null);
         }
+    }
+
+    private void completeLogin(Connection connection, ConnectC2S command, UserState user, String clientType,
+                               boolean passwordChanged) {
+        String name = user.name;
+        String negotiated = negotiateCompression(connection, command.getCompression());
+        boolean changed = passwordChanged || !clientType.equals(user.clientType);
         user.clientType = clientType;
+        if (changed) {
+            chat.saveUser(user);
+        }
+        cluster.publish(ClusterEvent.UserUpdated.of(user));
         user.connection = connection;
 
-        String sessionId = UUID.randomUUID().toString();
+        String sessionId = sessionTokens.issue(name, user.sessionEpoch);
         connection.sessionId = sessionId;
         sessions.put(sessionId, user);
-        connection.send(new LoginResposeS2C(sessionId));
-        LOGGER.info("User logged in: {} ({})", name, sessionId);
+        if (connection.isClosed()) {
+            disconnect(connection);
+            return;
+        }
+        connection.reply(command, new LoginResposeS2C(sessionId, config.heartbeatIntervalSeconds, negotiated));
+        if (sessionLog.isInfoEnabled()) {
+            sessionLog.logger().info("User logged in: {} ({})", name, sessionId);
+        }
+        releaseRemote(name);
+        presence.setOnline(name, clientType);
+        cluster.publish(new ClusterEvent.PresenceChanged(name, clientType, true));
         broadcast(new UserLoginEventS2C(name, clientType), user);
 
-        connection.send(new ListUsersS2C(getUserInfo()));
-        for (ChatMessage msg : chat.getMessages()) {
-            if (msg.index() > user.lastReceivedMessage) {
-                user.connection.send(new EventMessageS2C(msg.text(), msg.fromName()));
-                user.lastReceivedMessage = msg.index();
+        connection.send(userPage(null, 0));
+        replayHistory(connection, user, user.lastReceivedMessage);
+    }
+
+    private void handleResume(Connection connection, ResumeC2S command) {
+        String sessionId = command.getSession();
+        SessionTokens.Token token = sessionTokens.parse(sessionId);
+        UserState user = token != null ? chat.findUser(token.userName()) : null;
+        if (user == null) {
+            connection.replyError(command, "Неизвестная сессия");
+            return;
+        }
+        DetachedSession detached = detachedSessions.remove(sessionId);
+        UserState active = sessions.get(sessionId);
+        if (!user.isCurrentSession(token.epoch())
+                || detached == null && active == null && !token.issuedBeforeRestart() && !cluster.isClustered()) {
+            connection.replyError(command, "Сессия истекла");
+            return;
+        }
+        String negotiated = negotiateCompression(connection, command.getCompression());
+        if (active != null && active.connection != null && active.connection != connection) {
+            Connection stale = active.connection;
+            sessions.remove(sessionId);
+            unsubscribeAll(active);
+            stale.sessionId = null;
+            closeConnection(stale);
+        }
+
+        connection.sessionId = sessionId;
+        user.connection = connection;
+        sessions.put(sessionId, user);
+        connection.reply(command, new LoginResposeS2C(sessionId, config.heartbeatIntervalSeconds, negotiated));
+        if (sessionLog.isInfoEnabled()) {
+            sessionLog.logger().info("User resumed: {} ({})", user.name, sessionId);
+        }
+
+        if (releaseRemote(user.name) || !presence.isOnline(user.name)) {
+            presence.setOnline(user.name, user.clientType);
+            cluster.publish(new ClusterEvent.PresenceChanged(user.name, user.clientType, true));
+            broadcast(new UserLoginEventS2C(user.name, user.clientType), user);
+        }
+        if (detached != null) {
+            sendPresenceDelta(connection, user, detached.presenceVersion());
+        } else {
+            connection.send(userPage(null, 0));
+        }
+        int lastMessage = command.getLastMessage() >= 0 ? command.getLastMessage() : user.lastReceivedMessage;
+        replayHistory(connection, user, lastMessage);
+    }
+
+    private String negotiateCompression(Connection connection, String offered) {
+        if (config.compression != CompressionMode.DEFLATE || !FrameCompressor.offers(offered, FrameCompressor.DEFLATE)) {
+            return "";
+        }
+        connection.enableCompression(new FrameCompressor(config.compressionThreshold, config.compressionLevel));
+        return FrameCompressor.DEFLATE;
+    }
+
+    private void sendPresenceDelta(Connection connection, UserState user, long sinceVersion) {
+        PresenceIndex.Delta delta = presence.changesSince(sinceVersion);
+        if (delta == null) {
+            connection.send(userPage(null, 0));
+            return;
+        }
+        for (UserInfo joined : delta.joined()) {
+            if (!joined.name().equals(user.name)) {
+                connection.send(new UserLoginEventS2C(joined.name(), joined.clientType()));
             }
         }
+        for (String left : delta.left()) {
+            if (!left.equals(user.name)) {
+                connection.send(new UserLogoutEventS2C(left));
+            }
+        }
+    }
+
+    private ListUsersS2C userPage(String after, int limit) {
+        int pageSize = limit > 0 ? Math.min(limit, config.userListPageSize) : config.userListPageSize;
+        PresenceIndex.Page page = presence.page(after, pageSize);
+        return new ListUsersS2C(page.users(), List.of(), page.version(), page.next(), false);
     }
 
-    private List<UserInfo> getUserInfo() {
-        return chat.getUsers().stream().map(u -> new UserInfo(u.name, u.clientType)).toList();
+    private void replayHistory(Connection connection, UserState user, int lastMessage) {
+        ReplayBudget budget = new ReplayBudget(config.sendQueueCapacity / 2);
+        List<ChatMessage> history = budget.read(chat.getHistory().readFrom(lastMessage + 1));
+        for (ChatMessage msg : budget.take(history)) {
+            connection.send(OutgoingFrame.chatEvent(new EventMessageS2C(msg.text(), msg.fromName(), msg.index())));
+        }
+        if (!history.isEmpty()) {
+            user.lastReceivedMessage = history.get(history.size() - 1).index();
+        }
+        for (String roomName : user.rooms.keySet()) {
+            RoomState room = chat.findRoom(roomName);
+            if (room != null) {
+                subscribe(user, room, budget);
+            }
+        }
+        budget.reportMissed(connection);
     }
 
+    private void subscribe(UserState user, RoomState room, ReplayBudget budget) {
+        room.getSubscribers().add(user);
+        int lastReceived = user.rooms.getOrDefault(room.name, -1);
+        List<ChatMessage> history = budget.read(room.getHistory().readFrom(lastReceived + 1));
+        for (ChatMessage msg : budget.take(history)) {
+            user.connection.send(OutgoingFrame.chatEvent(new RoomMessageEventS2C(room.name, msg.text(), msg.fromName())));
+        }
+        if (!history.isEmpty()) {
+            lastReceived = history.get(history.size() - 1).index();
+        }
+        user.rooms.replace(room.name, lastReceived);
+    }
+
+    private void unsubscribeAll(UserState user) {
+        for (String roomName : user.rooms.keySet()) {
+            RoomState room = chat.findRoom(roomName);
+            if (room != null) {
+                room.getSubscribers().remove(user);
+                user.rooms.replace(roomName, room.getHistory().getNextIndex() - 1);
+            }
+        }
+    }
+
+
     private void handleListUsers(Connection connection, ListUsersC2S command) {
         UserState user = sessions.get(command.getSession());
         if (user == null) {
-            connection.sendError("Неизвестная сессия");
+            connection.replyError(command, "Неизвестная сессия");
             return;
         }
-        connection.send(new ListUsersS2C(getUserInfo()));
+        if (command.getSince() >= 0 && command.getAfter() == null) {
+            PresenceIndex.Delta delta = presence.changesSince(command.getSince());
+            if (delta != null) {
+                connection.reply(command, new ListUsersS2C(delta.joined(), delta.left(), delta.version(), null, true));
+                return;
+            }
+        }
+        connection.reply(command, userPage(command.getAfter(), command.getLimit()));
     }
 
     private void handleChatMessage(Connection connection, ChatMessageC2S command) {
         UserState user = sessions.get(command.getSession());
         if (user == null) {
-            connection.sendError("Неизвестная сессия");
+            connection.replyError(command, "Неизвестная сессия");
+            return;
+        }
+        String text = command.getMessage().trim();
+        if (text.isEmpty()) {
+            connection.replyError(command, "Незя пустое сообщение");
+            return;
+        }
+        if (!XMLWriter.canEncode(text)) {
+            connection.replyError(command, "Недопустимые символы в сообщении");
+            return;
+        }
+        if (cluster.isSequencer()) {
+            ChatMessage msg = sequenceMessage(user.name, text);
+            user.lastReceivedMessage = msg.index();
+        } else if (!cluster.sendToSequencer(new ClusterEvent.ChatSubmitted(user.name, text))) {
+            connection.replyError(command, "Кластер недоступен, сообщение не отправлено");
+            return;
+        }
+        connection.reply(command, new MessageResponseS2C());
+        if (chatLog.isInfoEnabled()) {
+            chatLog.logger().info("Message from {}: {}", user.name, text);
+        }
+    }
+
+    private void handleJoinRoom(Connection connection, JoinRoomC2S command) {
+        UserState user = sessions.get(command.getSession());
+        if (user == null) {
+            connection.replyError(command, "Неизвестная сессия");
+            return;
+        }
+        String roomName = command.getRoom().trim();
+        if (roomName.isEmpty() || !XMLWriter.canEncode(roomName)) {
+            connection.replyError(command, "Плохое имя комнаты");
+            return;
+        }
+        if (!user.rooms.containsKey(roomName) && user.rooms.size() >= config.maxRoomsPerUser) {
+            connection.replyError(command, "Слишком много комнат");
+            return;
+        }
+        RoomState room = chat.joinRoom(user, roomName);
+        cluster.publish(new ClusterEvent.MembershipChanged(user.name, roomName, true));
+        connection.reply(command, new RoomResponseS2C(roomName, true));
+        if (!room.getSubscribers().contains(user)) {
+            ReplayBudget budget = new ReplayBudget(config.sendQueueCapacity / 2);
+            subscribe(user, room, budget);
+            budget.reportMissed(connection);
+        }
+        if (sessionLog.isInfoEnabled()) {
+            sessionLog.logger().info("User {} joined room {}", user.name, roomName);
+        }
+    }
+
+    private void handleLeaveRoom(Connection connection, LeaveRoomC2S command) {
+        UserState user = sessions.get(command.getSession());
+        if (user == null) {
+            connection.replyError(command, "Неизвестная сессия");
+            return;
+        }
+        String roomName = command.getRoom().trim();
+        RoomState room = chat.findRoom(roomName);
+        if (room == null || !chat.leaveRoom(user, roomName)) {
+            connection.replyError(command, "Вы не в этой комнате");
+            return;
+        }
+        room.getSubscribers().remove(user);
+        cluster.publish(new ClusterEvent.MembershipChanged(user.name, roomName, false));
+        connection.reply(command, new RoomResponseS2C(roomName, false));
+        if (sessionLog.isInfoEnabled()) {
+            sessionLog.logger().info("User {} left room {}", user.name, roomName);
+        }
+    }
+
+    private void handleRoomMessage(Connection connection, RoomMessageC2S command) {
+        UserState user = sessions.get(command.getSession());
+        if (user == null) {
+            connection.replyError(command, "Неизвестная сессия");
+            return;
+        }
+        RoomState room = chat.findRoom(command.getRoom().trim());
+        if (room == null || !room.getSubscribers().contains(user)) {
+            connection.replyError(command, "Вы не в этой комнате");
             return;
         }
         String text = command.getMessage().trim();
         if (text.isEmpty()) {
-            connection.sendError("Незя пустое сообщение");
+            connection.replyError(command, "Незя пустое сообщение");
             return;
         }
-        ChatMessage msg = chat.addMessage(user.name, text);
-        broadcastMessage(msg, user);
-        user.lastReceivedMessage = msg.index();
-        connection.send(new MessageResponseS2C());
-        LOGGER.info("Message from {}: {}", user.name, text);
+        if (!XMLWriter.canEncode(text)) {
+            connection.replyError(command, "Недопустимые символы в сообщении");
+            return;
+        }
+        if (cluster.isSequencer()) {
+            sequenceRoomMessage(room, user.name, text);
+        } else if (!cluster.sendToSequencer(new ClusterEvent.RoomSubmitted(room.name, user.name, text))) {
+            connection.replyError(command, "Кластер недоступен, сообщение не отправлено");
+            return;
+        }
+        connection.reply(command, new MessageResponseS2C());
+        if (chatLog.isInfoEnabled()) {
+            chatLog.logger().info("Message from {} in {}: {}", user.name, room.name, text);
+        }
     }
 
     private void handleLogout(Connection connection, LogoutC2S command) {
         UserState user = sessions.get(command.getSession());
         if (user == null) {
-            connection.sendError("Неизвестная сессия");
+            connection.replyError(command, "Неизвестная сессия");
             return;
         }
-        connection.send(new LogoutResponseS2C());
+        user.revokeSessions();
+        chat.saveUser(user);
+        cluster.publish(ClusterEvent.UserUpdated.of(user));
+        connection.reply(command, new LogoutResponseS2C());
         disconnect(connection);
     }
 
     private void broadcast(Message message, UserState excludeUser) {
+        OutgoingFrame frame = OutgoingFrame.shared(message);
         List<UserState> usersCopy = sessions.values().stream().toList();
         for (UserState user : usersCopy) {
             if (user != excludeUser) {
-                user.connection.send(message);
+                user.connection.send(frame);
             }
         }
     }
 
     private void broadcastMessage(ChatMessage msg, UserState from) {
-        Message event = new EventMessageS2C(msg.text(), msg.fromName());
+        OutgoingFrame event = OutgoingFrame.chatEvent(new EventMessageS2C(msg.text(), msg.fromName(), msg.index()));
         List<UserState> usersCopy = sessions.values().stream().toList();
         for (UserState user : usersCopy) {
             if (user != from) {
@@ -299,14 +1072,217 @@ public class Server {
         }
     }
 
+    private void broadcastRoomMessage(RoomState room, ChatMessage msg, UserState from) {
+        OutgoingFrame event = OutgoingFrame.chatEvent(new RoomMessageEventS2C(room.name, msg.text(), msg.fromName()));
+        for (UserState user : room.getSubscribers()) {
+            if (user != from) {
+                user.connection.send(event);
+            }
+        }
+    }
+
     private void disconnect(Connection connection) {
-        UserState user = sessions.get(connection.sessionId);
+        UserState user = sessions.remove(connection.sessionId);
+        if (user == null) {
+            return;
+        }
+        unsubscribeAll(user);
+        userLeft(user);
+    }
+
+    private void detach(Connection connection) {
+        String sessionId = connection.sessionId;
+        UserState user = sessions.remove(sessionId);
         if (user == null) {
             return;
         }
-        sessions.remove(connection.sessionId);
+        unsubscribeAll(user);
+        detachedSessions.put(sessionId, new DetachedSession(user, presence.getVersion(), System.nanoTime()));
+        if (sessionLog.isInfoEnabled()) {
+            sessionLog.logger().info("Session detached: {}", user.name);
+        }
+    }
 
-        LOGGER.info("User disconnected: {}", user.name);
+    private void userLeft(UserState user) {
+        if (isRemote(user.name)) {
+            return;
+        }
+        presence.setOffline(user.name);
+        cluster.publish(new ClusterEvent.PresenceChanged(user.name, user.clientType, false));
+        if (sessionLog.isInfoEnabled()) {
+            sessionLog.logger().info("User disconnected: {}", user.name);
+        }
         broadcast(new UserLogoutEventS2C(user.name), user);
     }
+
+    private ChatMessage sequenceMessage(String from, String text) {
+        ChatMessage msg = chat.addMessage(from, text);
+        cluster.publish(new ClusterEvent.ChatSequenced(msg.index(), msg.fromName(), msg.text()));
+        broadcastMessage(msg, chat.findUser(from));
+        return msg;
+    }
+
+    private void sequenceRoomMessage(RoomState room, String from, String text) {
+        ChatMessage msg = chat.addRoomMessage(room, from, text);
+        cluster.publish(new ClusterEvent.RoomSequenced(room.name, msg.index(), msg.fromName(), msg.text()));
+        broadcastRoomMessage(room, msg, chat.findUser(from));
+    }
+
+    private boolean isRemote(String userName) {
+        for (Set<String> users : remoteUsers.values()) {
+            if (users.contains(userName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean releaseRemote(String userName) {
+        boolean released = false;
+        for (Set<String> users : remoteUsers.values()) {
+            released |= users.remove(userName);
+        }
+        return released;
+    }
+
+    private void remoteUserOnline(String nodeId, ClusterEvent.PresenceChanged event) {
+        releaseRemote(event.name());
+        remoteUsers.computeIfAbsent(nodeId, n -> ConcurrentHashMap.newKeySet()).add(event.name());
+        detachedSessions.values().removeIf(detached -> detached.user().name.equals(event.name()));
+        boolean wasOnline = presence.isOnline(event.name());
+        presence.setOnline(event.name(), event.clientType());
+        if (!wasOnline) {
+            broadcast(new UserLoginEventS2C(event.name(), event.clientType()), null);
+        }
+    }
+
+    private void remoteUserOffline(String nodeId, String userName) {
+        Set<String> users = remoteUsers.get(nodeId);
+        if (users == null || !users.remove(userName)) {
+            return;
+        }
+        presence.setOffline(userName);
+        broadcast(new UserLogoutEventS2C(userName), null);
+    }
+
+    private class ClusterListener implements ClusterBus.Listener {
+        @Override
+        public void onClusterEvent(String nodeId, ClusterEvent event) {
+            switch (event) {
+                case ClusterEvent.ChatSubmitted e -> sequenceMessage(e.from(), e.text());
+                case ClusterEvent.ChatSequenced e -> {
+                    ChatMessage msg = new ChatMessage(e.from(), e.text(), e.index());
+                    if (chat.addSequencedMessage(msg)) {
+                        broadcastMessage(msg, chat.findUser(e.from()));
+                    }
+                }
+                case ClusterEvent.RoomSubmitted e -> sequenceRoomMessage(chat.room(e.room()), e.from(), e.text());
+                case ClusterEvent.RoomSequenced e -> {
+                    RoomState room = chat.room(e.room());
+                    ChatMessage msg = new ChatMessage(e.from(), e.text(), e.index());
+                    if (chat.addSequencedRoomMessage(room, msg)) {
+                        broadcastRoomMessage(room, msg, chat.findUser(e.from()));
+                    }
+                }
+                case ClusterEvent.PresenceChanged e -> {
+                    if (e.online()) {
+                        remoteUserOnline(nodeId, e);
+                    } else {
+                        remoteUserOffline(nodeId, e.name());
+                    }
+                }
+                case ClusterEvent.UserUpdated e -> chat.mergeUser(e.toUserState());
+                case ClusterEvent.MembershipChanged e -> {
+                    UserState user = chat.findUser(e.name());
+                    if (user != null && e.joined()) {
+                        chat.joinRoom(user, e.room());
+                    } else if (user != null) {
+                        chat.leaveRoom(user, e.room());
+                    }
+                }
+            }
+        }
+
+        // Frames lost to a restart or a dropped link are never resent, so the peer gets the accounts,
+        // presence and rooms of our local sessions and, from the sequencer, the retained history.
+        // Offline accounts are left out: credentials merge last-writer-wins and ours may be stale.
+        @Override
+        public void onPeerConnected(String nodeId) {
+            Set<UserState> local = new HashSet<>(sessions.values());
+            for (DetachedSession detached : detachedSessions.values()) {
+                local.add(detached.user());
+            }
+            for (UserState user : local) {
+                if (isRemote(user.name)) {
+                    continue;
+                }
+                cluster.sendTo(nodeId, ClusterEvent.UserUpdated.of(user));
+                cluster.sendTo(nodeId, new ClusterEvent.PresenceChanged(user.name, user.clientType, true));
+                for (String room : user.rooms.keySet()) {
+                    cluster.sendTo(nodeId, new ClusterEvent.MembershipChanged(user.name, room, true));
+                }
+            }
+            if (!cluster.isSequencer()) {
+                return;
+            }
+            for (ChatMessage msg : chat.getHistory().readFrom(0).messages()) {
+                cluster.sendTo(nodeId, new ClusterEvent.ChatSequenced(msg.index(), msg.fromName(), msg.text()));
+            }
+            for (RoomState room : chat.getRooms()) {
+                for (ChatMessage msg : room.getHistory().readFrom(0).messages()) {
+                    cluster.sendTo(nodeId,
+                            new ClusterEvent.RoomSequenced(room.name, msg.index(), msg.fromName(), msg.text()));
+                }
+            }
+        }
+
+        @Override
+        public void onPeerDown(String nodeId) {
+            Set<String> users = remoteUsers.remove(nodeId);
+            if (users == null) {
+                return;
+            }
+            LOGGER.warn("Cluster peer {} is down, {} of its users marked offline", nodeId, users.size());
+            for (String userName : users) {
+                if (!isRemote(userName)) {
+                    presence.setOffline(userName);
+                    broadcast(new UserLogoutEventS2C(userName), null);
+                }
+            }
+        }
+    }
+
+    private record DetachedSession(UserState user, long presenceVersion, long detachedAt) {
+    }
+
+    /**
+     * Caps how many history events one login or join may queue, keeping the newest ones, so a user
+     * with many rooms cannot overflow its own send queue before it reads anything.
+     */
+    private static final class ReplayBudget {
+        private int remaining;
+        private int missed = 0;
+
+        ReplayBudget(int limit) {
+            this.remaining = Math.max(1, limit);
+        }
+
+        List<ChatMessage> read(MessageHistory.Slice slice) {
+            missed += slice.missed();
+            return slice.messages();
+        }
+
+        List<ChatMessage> take(List<ChatMessage> history) {
+            int skip = Math.max(0, history.size() - remaining);
+            missed += skip;
+            remaining -= history.size() - skip;
+            return history.subList(skip, history.size());
+        }
+
+        void reportMissed(Connection connection) {
+            if (missed > 0) {
+                connection.send(new MissedMessagesS2C(missed));
+            }
+        }
+    }
 }
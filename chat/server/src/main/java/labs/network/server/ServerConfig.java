@@ -0,0 +1,59 @@
+package labs.network.server;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ServerConfig {
+    public Path savePath = Path.of("chat.bin");
+    public int port = 6666;
+    public boolean loggingEnabled = true;
+    public IoModel ioModel = IoModel.THREAD;
+    public int selectorThreads = Runtime.getRuntime().availableProcessors();
+    public int statsInterval = 0;
+    public int maxFrameSize = 1024 * 1024;
+    public int sendQueueCapacity = 1024;
+    public OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    public int snapshotInterval = 60;
+    public int historySize = 200;
+    public int maxRoomsPerUser = 32;
+    public int metricsPort = 0;
+    public Map<String, Integer> logSampling = new HashMap<>();
+    public int passwordIterations = 100_000;
+    public int loginThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    public int loginQueueCapacity = 1024;
+    public int credentialCacheSeconds = 300;
+    public int sessionResumeSeconds = 0;
+    public int presenceLogSize = 4096;
+    public int userListPageSize = 500;
+    public String clusterNode = "node";
+    public String clusterBindAddress = "127.0.0.1";
+    public int clusterPort = 0;
+    public List<String> clusterPeers = new ArrayList<>();
+    public String clusterSecret = "";
+    public int drainTimeoutSeconds = 10;
+    public int drainJitterMillis = 3000;
+    public boolean reusePort = false;
+    public int messageRateLimit = 0;
+    public int messageBurst = 20;
+    public int globalMessageRateLimit = 0;
+    public int globalMessageBurst = 1000;
+    public RateLimitPolicy rateLimitPolicy = RateLimitPolicy.DELAY;
+    public int rateLimitMaxDelayMillis = 1000;
+    public int loginTimeoutSeconds = 0;
+    public int heartbeatIntervalSeconds = 0;
+    public int heartbeatMisses = 3;
+    public int tlsPort = 0;
+    public String tlsKeyStore = "";
+    public String tlsKeyStorePassword = "";
+    public String tlsKeyStoreType = "PKCS12";
+    public List<String> tlsProtocols = new ArrayList<>(List.of("TLSv1.3", "TLSv1.2"));
+    public int tlsSessionCacheSize = 20_000;
+    public int tlsSessionTimeoutSeconds = 86_400;
+    public List<String> serializers = new ArrayList<>(List.of("xml", "binary", "object", "object-stream"));
+    public CompressionMode compression = CompressionMode.NONE;
+    public int compressionThreshold = 1024;
+    public int compressionLevel = 1;
+}
@@ -0,0 +1,115 @@
+package labs.network.server;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+public class ServerMetrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final WriterStats writerStats = new WriterStats();
+    private final Map<String, LatencyHistogram> handlers = new ConcurrentHashMap<>();
+    private final LatencyHistogram serialization = new LatencyHistogram();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram rateLimitDelay = new LatencyHistogram();
+    private final LatencyHistogram tlsHandshake = new LatencyHistogram();
+    private final LongAdder rateLimitRejected = new LongAdder();
+    private final LongAdder idleDisconnects = new LongAdder();
+    private final LongAdder loginTimeouts = new LongAdder();
+    private final LongAdder compressedFrames = new LongAdder();
+    private final LongAdder compressionSavedBytes = new LongAdder();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    public WriterStats getWriterStats() {
+        return writerStats;
+    }
+
+    public LatencyHistogram handler(String messageType) {
+        return handlers.computeIfAbsent(messageType, k -> new LatencyHistogram());
+    }
+
+    public LatencyHistogram getSerialization() {
+        return serialization;
+    }
+
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    public void recordRateLimitDelay(long nanos) {
+        rateLimitDelay.record(nanos);
+    }
+
+    public void recordRateLimitRejected() {
+        rateLimitRejected.increment();
+    }
+
+    public void recordTlsHandshake(long nanos) {
+        tlsHandshake.record(nanos);
+    }
+
+    public void recordIdleDisconnect() {
+        idleDisconnects.increment();
+    }
+
+    public void recordLoginTimeout() {
+        loginTimeouts.increment();
+    }
+
+    public void recordCompression(int originalBytes, int compressedBytes) {
+        compressedFrames.increment();
+        compressionSavedBytes.add(originalBytes - compressedBytes);
+    }
+
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public String render() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(handlers).entrySet()) {
+            appendHistogram(out, "chat_handler_latency", "type=\"" + entry.getKey() + "\"", entry.getValue());
+        }
+        appendHistogram(out, "chat_serialization_latency", "", serialization);
+        appendHistogram(out, "chat_queue_wait_latency", "", queueWait);
+        appendHistogram(out, "chat_rate_limit_delay", "", rateLimitDelay);
+        appendHistogram(out, "chat_tls_handshake", "", tlsHandshake);
+        appendValue(out, "chat_rate_limit_rejected_total", rateLimitRejected.sum());
+        appendValue(out, "chat_idle_disconnects_total", idleDisconnects.sum());
+        appendValue(out, "chat_login_timeouts_total", loginTimeouts.sum());
+        appendValue(out, "chat_compressed_frames_total", compressedFrames.sum());
+        appendValue(out, "chat_compression_saved_bytes_total", compressionSavedBytes.sum());
+        appendValue(out, "chat_writer_flushes_total", writerStats.getFlushes());
+        appendValue(out, "chat_writer_messages_total", writerStats.getMessages());
+        appendValue(out, "chat_writer_bytes_total", writerStats.getBytes());
+        appendValue(out, "chat_send_dropped_total", writerStats.getDropped());
+        appendValue(out, "chat_overflow_disconnects_total", writerStats.getOverflowDisconnects());
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+            appendValue(out, entry.getKey(), entry.getValue().getAsLong());
+        }
+        return out.toString();
+    }
+
+    private static void appendHistogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        for (double quantile : QUANTILES) {
+            out.append(name).append("_us{").append(prefix).append("quantile=\"").append(quantile).append("\"} ")
+                    .append(micros(histogram.getValueAtQuantile(quantile))).append('\n');
+        }
+        String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+        out.append(name).append("_us_max").append(suffix).append(micros(histogram.getMax())).append('\n');
+        out.append(name).append("_us_mean").append(suffix).append(micros((long) histogram.getMean())).append('\n');
+        out.append(name).append("_count").append(suffix).append(histogram.getCount()).append('\n');
+    }
+
+    private static void appendValue(StringBuilder out, String name, long value) {
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000.0);
+    }
+}
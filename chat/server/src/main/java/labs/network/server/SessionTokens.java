@@ -0,0 +1,98 @@
+package labs.network.server;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class SessionTokens {
+    private static final long MAX_TOKEN_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final int MAC_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    private final SecretKeySpec key;
+    private final BlockingQueue<Mac> macs = new ArrayBlockingQueue<>(MAC_POOL_SIZE);
+    private final SecureRandom random = new SecureRandom();
+    private final long startedAt = System.currentTimeMillis();
+
+    public SessionTokens(byte[] secret) {
+        this.key = new SecretKeySpec(secret, "HmacSHA256");
+    }
+
+    public static byte[] deriveSecret(String sharedSecret) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(sharedSecret.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String issue(String userName, long epoch) {
+        byte[] nonce = new byte[12];
+        random.nextBytes(nonce);
+        String body = ENCODER.encodeToString(userName.getBytes(StandardCharsets.UTF_8))
+                + "." + Long.toString(epoch, 36)
+                + "." + Long.toString(System.currentTimeMillis(), 36)
+                + "." + ENCODER.encodeToString(nonce);
+        return body + "." + ENCODER.encodeToString(sign(body));
+    }
+
+    public Token parse(String token) {
+        int signatureStart = token.lastIndexOf('.');
+        if (signatureStart < 0) {
+            return null;
+        }
+        String body = token.substring(0, signatureStart);
+        String[] parts = body.split("\\.");
+        if (parts.length != 4) {
+            return null;
+        }
+        try {
+            byte[] signature = DECODER.decode(token.substring(signatureStart + 1));
+            if (!MessageDigest.isEqual(signature, sign(body))) {
+                return null;
+            }
+            long epoch = Long.parseLong(parts[1], 36);
+            long issuedAt = Long.parseLong(parts[2], 36);
+            if (System.currentTimeMillis() - issuedAt > MAX_TOKEN_AGE_MILLIS) {
+                return null;
+            }
+            String userName = new String(DECODER.decode(parts[0]), StandardCharsets.UTF_8);
+            return new Token(userName, epoch, issuedAt < startedAt);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(String body) {
+        Mac mac = macs.poll();
+        if (mac == null) {
+            mac = newMac();
+        }
+        try {
+            return mac.doFinal(body.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            macs.offer(mac);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public record Token(String userName, long epoch, boolean issuedBeforeRestart) {
+    }
+}
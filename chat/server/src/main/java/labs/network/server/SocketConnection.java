@@ -0,0 +1,178 @@
+package labs.network.server;
+
+import labs.network.protocol.FrameCompressor;
+import labs.network.protocol.Message;
+import labs.network.protocol.SerializerRegistry;
+
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class SocketConnection extends Connection {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    final Socket socket;
+    final InputStream inputStream;
+    final OutputStream outputStream;
+    private Thread writerThread;
+    private final BlockingQueue<Runnable> readerTasks = new LinkedBlockingQueue<>();
+    private volatile boolean readPaused = false;
+    private final ByteBuffer sizeBuffer = ByteBuffer.allocate(Integer.BYTES);
+    private final byte[] sizeBytes = new byte[Integer.BYTES];
+    private final ByteBuffer sizeInput = ByteBuffer.wrap(sizeBytes);
+
+    SocketConnection(Socket socket, ServerConfig config, ServerMetrics metrics, BufferPool bufferPool,
+                     SerializerRegistry serializers) throws IOException {
+        super(config, metrics, bufferPool, serializers);
+        this.socket = socket;
+        this.inputStream = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+        this.outputStream = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+    }
+
+    void startWriter() {
+        assert writerThread == null;
+        writerThread = Thread.ofVirtual().start(this::writerLoop);
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return socket.getRemoteSocketAddress();
+    }
+
+    @Override
+    protected void onQueued() {
+    }
+
+    @Override
+    protected void closeTransport() {
+        Thread thread = writerThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        resumeReading();
+    }
+
+    @Override
+    protected void pauseReading() {
+        readPaused = true;
+    }
+
+    @Override
+    protected void resumeReading() {
+        if (readPaused) {
+            readPaused = false;
+            readerTasks.add(() -> {
+            });
+        }
+    }
+
+    @Override
+    protected void executeOnReader(Runnable task) {
+        readerTasks.add(task);
+    }
+
+    private void writerLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                OutgoingFrame frame = takeFrame();
+                writeBatch(frame);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void writeBatch(OutgoingFrame first) throws IOException {
+        int count = 0;
+        long bytes = 0;
+        boolean closing = false;
+        OutgoingFrame frame = first;
+        while (frame != null) {
+            bytes += write(frame);
+            count += 1;
+            if (frame.isClosing()) {
+                closing = true;
+                break;
+            }
+            if (count >= MAX_BATCH_MESSAGES || bytes >= MAX_BATCH_BYTES) {
+                break;
+            }
+            frame = pollFrame();
+        }
+        outputStream.flush();
+        writerStats.recordFlush(count, bytes);
+        if (closing) {
+            close();
+        }
+    }
+
+    private int write(OutgoingFrame frame) throws IOException {
+        byte[] payload = encode(frame);
+        if (payload == null) {
+            return 0;
+        }
+        int prefix = payload.length;
+        byte[] compressed = compress(payload);
+        if (compressed != null) {
+            payload = compressed;
+            prefix = compressed.length | FrameCompressor.COMPRESSED_FLAG;
+        }
+        sizeBuffer.clear();
+        sizeBuffer.putInt(prefix);
+        sizeBuffer.flip();
+
+        outputStream.write(sizeBuffer.array(), 0, Integer.BYTES);
+        outputStream.write(payload);
+        return Integer.BYTES + payload.length;
+    }
+
+    public Message readMessage() throws IOException {
+        while (readPaused) {
+            try {
+                readerTasks.take().run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reads are paused");
+            }
+        }
+        if (!readFully(sizeBytes, Integer.BYTES)) {
+            return null;
+        }
+        int prefix = sizeInput.getInt(0);
+        int messageSize = FrameCompressor.length(prefix);
+        checkFrameSize(messageSize);
+        byte[] data = bufferPool.acquire(messageSize);
+        try {
+            if (!readFully(data, messageSize)) {
+                return null;
+            }
+            return decode(prefix, data, 0, messageSize);
+        } finally {
+            bufferPool.release(data);
+        }
+    }
+
+    private boolean readFully(byte[] data, int size) throws IOException {
+        int offset = 0;
+        while (offset < size) {
+            int read = inputStream.read(data, offset, size - offset);
+            if (read == -1) {
+                if (offset == 0) {
+                    return false;
+                }
+                throw new EOFException("Unexpected end of stream: expected " + size + " bytes, got " + offset);
+            }
+            offset += read;
+        }
+        return true;
+    }
+}
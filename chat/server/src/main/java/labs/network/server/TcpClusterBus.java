@@ -0,0 +1,434 @@
+package labs.network.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Peers authenticate each other with an HMAC challenge-response over fresh nonces, and every
+ * following frame carries a sequence number and an HMAC under a per-connection key. Frames are
+ * not encrypted, so the bus should stay on loopback or a private network.
+ * <p>
+ * Resent frames are dropped by sequence number, but delivery is still best effort: frames
+ * flushed to a connection that dies before the peer reads them are lost, and there is no
+ * sequencer failover. While the sequencer is unreachable chat messages are refused.
+ * <p>
+ * Every time the link to a peer comes up the listener is asked to resend its state to that peer,
+ * which repairs whatever a restart or a lost frame left behind, within the sequencer's history window.
+ */
+public class TcpClusterBus implements ClusterBus {
+    private static final Logger LOGGER = LogManager.getLogger(TcpClusterBus.class);
+
+    private static final int MAGIC = 0x43484331;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_BATCH_FRAMES = 256;
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final long RECONNECT_MILLIS = 1000;
+    private static final int NONCE_SIZE = 16;
+    private static final int MAC_SIZE = 32;
+
+    private final String nodeId;
+    private final String bindAddress;
+    private final int port;
+    private final byte[] secret;
+    private final String sequencerId;
+    private final SecureRandom random = new SecureRandom();
+    private final long incarnation = random.nextLong();
+    private final Map<String, Peer> peers = new LinkedHashMap<>();
+    private final Map<String, Socket> inbound = new ConcurrentHashMap<>();
+    private final Map<String, Delivered> delivered = new ConcurrentHashMap<>();
+    private ServerSocket serverSocket;
+    private Listener listener;
+    private volatile boolean running = false;
+
+    public TcpClusterBus(ServerConfig config) {
+        if (config.clusterSecret.isEmpty()) {
+            throw new IllegalArgumentException("clusterSecret is required when clusterPort is set");
+        }
+        this.nodeId = config.clusterNode;
+        this.bindAddress = config.clusterBindAddress;
+        this.port = config.clusterPort;
+        this.secret = config.clusterSecret.getBytes(StandardCharsets.UTF_8);
+        String lowest = nodeId;
+        for (String spec : config.clusterPeers) {
+            Peer peer = Peer.parse(this, spec);
+            if (peer.id.equals(nodeId) || peers.putIfAbsent(peer.id, peer) != null) {
+                throw new IllegalArgumentException("Duplicate cluster node id: " + peer.id);
+            }
+            if (peer.id.compareTo(lowest) < 0) {
+                lowest = peer.id;
+            }
+        }
+        this.sequencerId = lowest;
+    }
+
+    @Override
+    public void start(Listener listener) throws IOException {
+        this.listener = listener;
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName(bindAddress), port));
+        running = true;
+        Thread.ofPlatform().name("cluster-accept").daemon().start(this::acceptLoop);
+        for (Peer peer : peers.values()) {
+            peer.thread = Thread.ofVirtual().name("cluster-peer-" + peer.id).start(peer::run);
+        }
+        LOGGER.info("Cluster node {} listening on {}:{}, sequencer is {}", nodeId, bindAddress, port, sequencerId);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public boolean isClustered() {
+        return true;
+    }
+
+    @Override
+    public boolean isSequencer() {
+        return sequencerId.equals(nodeId);
+    }
+
+    @Override
+    public int getConnectedPeers() {
+        int connected = 0;
+        for (Peer peer : peers.values()) {
+            if (peer.connected) {
+                connected += 1;
+            }
+        }
+        return connected;
+    }
+
+    @Override
+    public void publish(ClusterEvent event) {
+        byte[] frame = ClusterEvent.encode(event);
+        for (Peer peer : peers.values()) {
+            peer.enqueue(frame);
+        }
+    }
+
+    @Override
+    public boolean sendToSequencer(ClusterEvent event) {
+        if (isSequencer()) {
+            listener.onClusterEvent(nodeId, event);
+            return true;
+        }
+        Peer sequencer = peers.get(sequencerId);
+        return sequencer.connected && inbound.containsKey(sequencerId) && sequencer.enqueue(ClusterEvent.encode(event));
+    }
+
+    @Override
+    public void sendTo(String nodeId, ClusterEvent event) {
+        Peer peer = peers.get(nodeId);
+        if (peer != null) {
+            peer.enqueue(ClusterEvent.encode(event));
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+        }
+        for (Peer peer : peers.values()) {
+            if (peer.thread != null) {
+                peer.thread.interrupt();
+            }
+        }
+        for (Socket socket : inbound.values()) {
+            closeQuietly(socket);
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread.ofVirtual().start(() -> readLoop(socket));
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.error("Cluster accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        String from = null;
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            Link link = acceptHello(in, out);
+            if (link == null || !peers.containsKey(link.peerId())) {
+                LOGGER.warn("Rejected cluster connection from {}", socket.getRemoteSocketAddress());
+                return;
+            }
+            socket.setSoTimeout(0);
+            from = link.peerId();
+            Socket previous = inbound.put(from, socket);
+            if (previous != null) {
+                closeQuietly(previous);
+            }
+            LOGGER.info("Cluster peer {} connected from {}", from, socket.getRemoteSocketAddress());
+            Delivered last = delivered.get(from);
+            long lastSeq = last != null && last.incarnation() == link.incarnation() ? last.seq() : 0;
+            byte[] mac = new byte[MAC_SIZE];
+            while (running && inbound.get(from) == socket) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_FRAME_SIZE) {
+                    throw new IOException("Invalid cluster frame length: " + length);
+                }
+                long seq = in.readLong();
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                in.readFully(mac);
+                if (!MessageDigest.isEqual(mac, frameMac(link.mac(), seq, frame))) {
+                    throw new IOException("Invalid cluster frame signature");
+                }
+                if (seq <= lastSeq) {
+                    continue;
+                }
+                lastSeq = seq;
+                delivered.put(from, new Delivered(link.incarnation(), seq));
+                listener.onClusterEvent(from, ClusterEvent.decode(frame));
+            }
+        } catch (IOException e) {
+            if (running && from != null) {
+                LOGGER.warn("Cluster peer {} disconnected: {}", from, e.getMessage());
+            }
+        }
+        if (from != null && inbound.remove(from, socket) && running) {
+            listener.onPeerDown(from);
+        }
+    }
+
+    private Link acceptHello(DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] challenge = newNonce();
+        out.writeInt(MAGIC);
+        out.write(challenge);
+        out.flush();
+        if (in.readInt() != MAGIC) {
+            return null;
+        }
+        String peerId = in.readUTF();
+        long peerIncarnation = in.readLong();
+        byte[] nonce = new byte[NONCE_SIZE];
+        in.readFully(nonce);
+        byte[] proof = new byte[MAC_SIZE];
+        in.readFully(proof);
+        if (!MessageDigest.isEqual(proof, prove("hello", peerId, peerIncarnation, challenge, nonce))) {
+            return null;
+        }
+        out.write(prove("welcome", peerId, peerIncarnation, challenge, nonce));
+        out.flush();
+        return new Link(peerId, peerIncarnation, sessionMac(peerId, peerIncarnation, challenge, nonce));
+    }
+
+    private Mac connectHello(DataInputStream in, DataOutputStream out) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a cluster node");
+        }
+        byte[] challenge = new byte[NONCE_SIZE];
+        in.readFully(challenge);
+        byte[] nonce = newNonce();
+        out.writeInt(MAGIC);
+        out.writeUTF(nodeId);
+        out.writeLong(incarnation);
+        out.write(nonce);
+        out.write(prove("hello", nodeId, incarnation, challenge, nonce));
+        out.flush();
+        byte[] proof = new byte[MAC_SIZE];
+        in.readFully(proof);
+        if (!MessageDigest.isEqual(proof, prove("welcome", nodeId, incarnation, challenge, nonce))) {
+            throw new IOException("Cluster peer failed authentication");
+        }
+        return sessionMac(nodeId, incarnation, challenge, nonce);
+    }
+
+    private byte[] newNonce() {
+        byte[] nonce = new byte[NONCE_SIZE];
+        random.nextBytes(nonce);
+        return nonce;
+    }
+
+    private byte[] prove(String label, String id, long peerIncarnation, byte[] challenge, byte[] nonce) {
+        Mac mac = mac(secret);
+        mac.update((label + "|" + id + "|" + peerIncarnation + "|").getBytes(StandardCharsets.UTF_8));
+        mac.update(challenge);
+        return mac.doFinal(nonce);
+    }
+
+    private Mac sessionMac(String id, long peerIncarnation, byte[] challenge, byte[] nonce) {
+        return mac(prove("frames", id, peerIncarnation, challenge, nonce));
+    }
+
+    private static Mac mac(byte[] key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] frameMac(Mac mac, long seq, byte[] frame) {
+        for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            mac.update((byte) (seq >>> shift));
+        }
+        return mac.doFinal(frame);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static final class Peer {
+        private final TcpClusterBus bus;
+        private final String id;
+        private final InetSocketAddress address;
+        private final BlockingQueue<Frame> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+        private final List<Frame> unflushed = new ArrayList<>();
+        private volatile boolean connected = false;
+        private Thread thread;
+        private final AtomicLong dropped = new AtomicLong(0);
+        private long nextSeq = 1;
+
+        private Peer(TcpClusterBus bus, String id, InetSocketAddress address) {
+            this.bus = bus;
+            this.id = id;
+            this.address = address;
+        }
+
+        static Peer parse(TcpClusterBus bus, String spec) {
+            int at = spec.indexOf('@');
+            int colon = spec.lastIndexOf(':');
+            if (at <= 0 || colon <= at + 1) {
+                throw new IllegalArgumentException("Invalid cluster peer, expected id@host:port: " + spec);
+            }
+            String host = spec.substring(at + 1, colon);
+            int port = Integer.parseInt(spec.substring(colon + 1));
+            return new Peer(bus, spec.substring(0, at), InetSocketAddress.createUnresolved(host, port));
+        }
+
+        synchronized boolean enqueue(byte[] frame) {
+            if (queue.offer(new Frame(nextSeq, frame))) {
+                nextSeq += 1;
+                return true;
+            }
+            long total = dropped.incrementAndGet();
+            if (Long.bitCount(total) == 1) {
+                LOGGER.warn("Cluster queue for {} is full, {} events dropped", id, total);
+            }
+            return false;
+        }
+
+        void run() {
+            while (bus.running) {
+                try (Socket socket = new Socket()) {
+                    socket.connect(new InetSocketAddress(address.getHostString(), address.getPort()), CONNECT_TIMEOUT_MILLIS);
+                    socket.setTcpNoDelay(true);
+                    socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+                    Mac mac = bus.connectHello(in, out);
+                    socket.setSoTimeout(0);
+                    connected = true;
+                    LOGGER.info("Connected to cluster peer {} at {}:{}", id, address.getHostString(), address.getPort());
+                    Thread writer = Thread.currentThread();
+                    Thread.ofVirtual().start(() -> awaitHangup(socket, in, writer));
+                    bus.listener.onPeerConnected(id);
+                    writeLoop(out, mac);
+                } catch (IOException e) {
+                    if (connected) {
+                        LOGGER.warn("Lost cluster peer {}: {}", id, e.getMessage());
+                    }
+                } catch (InterruptedException e) {
+                    if (!bus.running) {
+                        return;
+                    }
+                    LOGGER.warn("Cluster peer {} hung up", id);
+                } finally {
+                    connected = false;
+                }
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException e) {
+                    if (!bus.running) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        // The peer never writes after the handshake, so this read only returns once it hangs up.
+        // Without it an idle link to a restarted peer would look connected until the next publish.
+        private static void awaitHangup(Socket socket, InputStream in, Thread writer) {
+            try {
+                while (in.read() >= 0) {
+                    // nothing is expected
+                }
+            } catch (IOException ignored) {
+            }
+            if (!socket.isClosed()) {
+                writer.interrupt();
+            }
+        }
+
+        private void writeLoop(DataOutputStream out, Mac mac) throws IOException, InterruptedException {
+            while (bus.running) {
+                if (unflushed.isEmpty()) {
+                    unflushed.add(queue.take());
+                }
+                queue.drainTo(unflushed, MAX_BATCH_FRAMES - unflushed.size());
+                for (Frame frame : unflushed) {
+                    out.writeInt(frame.payload().length);
+                    out.writeLong(frame.seq());
+                    out.write(frame.payload());
+                    out.write(frameMac(mac, frame.seq(), frame.payload()));
+                }
+                out.flush();
+                unflushed.clear();
+            }
+        }
+    }
+
+    private record Frame(long seq, byte[] payload) {
+    }
+
+    private record Link(String peerId, long incarnation, Mac mac) {
+    }
+
+    private record Delivered(long incarnation, long seq) {
+    }
+}
@@ -0,0 +1,125 @@
+package labs.network.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+public class TimerWheel {
+    private static final Logger LOGGER = LogManager.getLogger(TimerWheel.class);
+
+    private final long tickNanos;
+    private final ArrayDeque<Timeout>[] slots;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final long startTime = System.nanoTime();
+    private long currentTick = 0;
+    private Thread thread;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickMillis, int slotCount) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        int size = Integer.highestOneBit(Math.max(2, slotCount - 1)) << 1;
+        this.slots = (ArrayDeque<Timeout>[]) new ArrayDeque<?>[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.mask = size - 1;
+    }
+
+    public void start(String name) {
+        thread = Thread.ofPlatform().name(name).daemon().start(this::run);
+    }
+
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+        pending.clear();
+    }
+
+    public Timeout schedule(Runnable task, long delayNanos) {
+        long deadline = System.nanoTime() - startTime + Math.max(0, delayNanos);
+        Timeout timeout = new Timeout(task, (deadline + tickNanos - 1) / tickNanos);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long wakeAt = startTime + (currentTick + 1) * tickNanos;
+            long sleep = wakeAt - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            currentTick += 1;
+            transferPending();
+            expire(slots[(int) (currentTick & mask)]);
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            if (timeout.deadlineTick < currentTick) {
+                timeout.deadlineTick = currentTick;
+            }
+            slots[(int) (timeout.deadlineTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> slot) {
+        Iterator<Timeout> iterator = slot.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.isCancelled()) {
+                iterator.remove();
+            } else if (timeout.deadlineTick <= currentTick) {
+                iterator.remove();
+                timeout.fire();
+            }
+        }
+    }
+
+    public static final class Timeout {
+        private volatile Runnable task;
+        private long deadlineTick;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public void cancel() {
+            task = null;
+        }
+
+        public boolean isCancelled() {
+            return task == null;
+        }
+
+        private void fire() {
+            Runnable current = task;
+            task = null;
+            if (current == null) {
+                return;
+            }
+            try {
+                current.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("Timer task failed", e);
+            }
+        }
+    }
+}
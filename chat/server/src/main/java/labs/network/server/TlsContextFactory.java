@@ -0,0 +1,38 @@
+package labs.network.server;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+public final class TlsContextFactory {
+    private TlsContextFactory() {
+    }
+
+    public static SSLContext create(ServerConfig config) throws IOException {
+        if (config.tlsKeyStore.isEmpty()) {
+            throw new IllegalArgumentException("tlsKeyStore is required when tlsPort is set");
+        }
+        char[] password = config.tlsKeyStorePassword.toCharArray();
+        try (InputStream stream = Files.newInputStream(Path.of(config.tlsKeyStore))) {
+            KeyStore keyStore = KeyStore.getInstance(config.tlsKeyStoreType);
+            keyStore.load(stream, password);
+            KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagers.init(keyStore, password);
+
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keyManagers.getKeyManagers(), null, null);
+            SSLSessionContext sessions = context.getServerSessionContext();
+            sessions.setSessionCacheSize(config.tlsSessionCacheSize);
+            sessions.setSessionTimeout(config.tlsSessionTimeoutSeconds);
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to load TLS key store " + config.tlsKeyStore, e);
+        }
+    }
+}
@@ -1,11 +1,12 @@
 package labs.network.server;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
-import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class UserState implements Serializable {
     @Serial
@@ -16,36 +17,66 @@ public class UserState implements Serializable {
     public int lastReceivedMessage;
     public boolean hasPassword;
     public byte[] passwordHash;
+    public byte[] passwordSalt;
+    public int passwordIterations;
+    public long sessionEpoch;
+    public Map<String, Integer> rooms = new ConcurrentHashMap<>();
     public transient Connection connection;
 
-    public UserState(String name, String password) {
+    public UserState(String name) {
         this.name = name;
         this.connection = null;
-        setPassword(password);
+        this.lastReceivedMessage = -1;
     }
 
-    public byte[] hash(String s) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA3-256");
-            return digest.digest(s.getBytes(StandardCharsets.UTF_8));
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private void setPassword(String pass) {
+    private void setPassword(String pass, PasswordHasher hasher) {
         if (!pass.isEmpty()) {
+            byte[] salt = hasher.newSalt();
+            passwordHash = hasher.derive(pass, salt, hasher.getIterations());
+            passwordSalt = salt;
+            passwordIterations = hasher.getIterations();
             hasPassword = true;
-            passwordHash = hash(pass);
         }
     }
 
-    public boolean testPassword(String password) {
+    public synchronized boolean testPassword(String password, PasswordHasher hasher) {
         if (!hasPassword) {
-            setPassword(password);
+            setPassword(password, hasher);
+            return true;
+        }
+        if (passwordSalt == null) {
+            if (!MessageDigest.isEqual(hasher.legacyHash(password), passwordHash)) {
+                return false;
+            }
+            setPassword(password, hasher);
             return true;
         }
-        byte[] h = hash(password);
-        return Arrays.equals(h, passwordHash);
+        byte[] h = hasher.derive(password, passwordSalt, passwordIterations);
+        return MessageDigest.isEqual(h, passwordHash);
+    }
+
+    synchronized void updateCredentials(UserState other) {
+        clientType = other.clientType;
+        hasPassword = other.hasPassword;
+        passwordHash = other.passwordHash;
+        passwordSalt = other.passwordSalt;
+        passwordIterations = other.passwordIterations;
+        sessionEpoch = Math.max(sessionEpoch, other.sessionEpoch);
+    }
+
+    synchronized long revokeSessions() {
+        return ++sessionEpoch;
+    }
+
+    synchronized boolean isCurrentSession(long epoch) {
+        return sessionEpoch == epoch;
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (rooms == null) {
+            rooms = new ConcurrentHashMap<>();
+        }
     }
 }
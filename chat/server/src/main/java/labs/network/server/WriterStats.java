@@ -0,0 +1,49 @@
+package labs.network.server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class WriterStats {
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder overflowDisconnects = new LongAdder();
+
+    void recordFlush(int messageCount, long byteCount) {
+        flushes.increment();
+        messages.add(messageCount);
+        bytes.add(byteCount);
+    }
+
+    void recordRetryWrite(long byteCount) {
+        bytes.add(byteCount);
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    void recordOverflowDisconnect() {
+        overflowDisconnects.increment();
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getOverflowDisconnects() {
+        return overflowDisconnects.sum();
+    }
+}
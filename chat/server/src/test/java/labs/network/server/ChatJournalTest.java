@@ -0,0 +1,85 @@
+package labs.network.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ChatJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testReplay() throws IOException {
+        Path path = dir.resolve("chat.journal");
+        write(path, "one", "two", "three");
+        assertEquals(List.of("one", "two", "three"), replay(path));
+    }
+
+    @Test
+    void testTornTailIsTruncated() throws IOException {
+        Path path = dir.resolve("chat.journal");
+        write(path, "one", "two");
+        long validLength = Files.size(path);
+        // Header of a 100 byte record followed by only part of its body
+        Files.write(path, new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 5, 6}, StandardOpenOption.APPEND);
+
+        assertEquals(List.of("one", "two"), replay(path));
+        assertEquals(validLength, Files.size(path));
+
+        write(path, "three");
+        assertEquals(List.of("one", "two", "three"), replay(path));
+    }
+
+    @Test
+    void testCrcMismatchStopsReplay() throws IOException {
+        Path path = dir.resolve("chat.journal");
+        write(path, "one", "two", "three");
+        byte[] data = Files.readAllBytes(path);
+        data[data.length - 1] ^= 1;
+        Files.write(path, data);
+
+        assertEquals(List.of("one", "two"), replay(path));
+    }
+
+    @Test
+    void testRotationKeepsRecords() throws IOException {
+        Path path = dir.resolve("chat.journal");
+        ChatJournal journal = new ChatJournal(path);
+        journal.open();
+        ChatState chat = new ChatState(16);
+        chat.setJournal(journal);
+        chat.addMessage("alice", "one");
+        journal.rotate();
+        chat.addMessage("alice", "two");
+        journal.close();
+
+        assertEquals(List.of("one", "two"), replay(path));
+        assertThrows(IOException.class, journal::rotate);
+    }
+
+    private static void write(Path path, String... texts) throws IOException {
+        ChatState chat = new ChatState(16);
+        new ChatJournal(path).replayInto(chat);
+        ChatJournal journal = new ChatJournal(path);
+        journal.open();
+        chat.setJournal(journal);
+        for (String text : texts) {
+            chat.addMessage("alice", text);
+        }
+        journal.close();
+    }
+
+    private static List<String> replay(Path path) throws IOException {
+        ChatState chat = new ChatState(16);
+        new ChatJournal(path).replayInto(chat);
+        return chat.getHistory().readFrom(0).messages().stream().map(ChatMessage::text).toList();
+    }
+}
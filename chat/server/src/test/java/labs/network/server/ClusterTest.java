@@ -0,0 +1,261 @@
+package labs.network.server;
+
+import labs.network.protocol.BinarySerializer;
+import labs.network.protocol.Message;
+import labs.network.protocol.Serializer;
+import labs.network.protocol.UserInfo;
+import labs.network.protocol.c2s.ChatMessageC2S;
+import labs.network.protocol.c2s.ConnectC2S;
+import labs.network.protocol.c2s.ListUsersC2S;
+import labs.network.protocol.c2s.ResumeC2S;
+import labs.network.protocol.s2c.EventMessageS2C;
+import labs.network.protocol.s2c.ListUsersS2C;
+import labs.network.protocol.s2c.LoginResposeS2C;
+import labs.network.protocol.s2c.MessageResponseS2C;
+import labs.network.protocol.s2c.UserLoginEventS2C;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class ClusterTest {
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private final List<Server> servers = new ArrayList<>();
+    private final List<TestClient> clients = new ArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (TestClient client : clients) {
+            client.close();
+        }
+        for (Server server : servers) {
+            server.drain();
+        }
+    }
+
+    @Test
+    void testLoginBroadcastAndResumeAcrossNodes() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        int clusterA = freePort();
+        int clusterB = freePort();
+        startNode("a", portA, clusterA, "b@127.0.0.1:" + clusterB);
+        startNode("b", portB, clusterB, "a@127.0.0.1:" + clusterA);
+
+        TestClient alice = connect(portA);
+        String aliceSession = alice.login("alice");
+        TestClient bob = connect(portB);
+        String bobSession = bob.login("bob");
+
+        // Node b forwards chat to the sequencer on node a, which refuses until both links are up.
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!(bob.request(new ChatMessageC2S("hi", bobSession)) instanceof MessageResponseS2C)) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Cluster did not connect");
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        EventMessageS2C fromBob = alice.receive(EventMessageS2C.class, e -> e.getFromName().equals("bob"));
+        assertEquals("hi", fromBob.getMessage());
+
+        assertInstanceOf(MessageResponseS2C.class, alice.request(new ChatMessageC2S("hello", aliceSession)));
+        EventMessageS2C fromAlice = bob.receive(EventMessageS2C.class, e -> e.getFromName().equals("alice"));
+        assertEquals("hello", fromAlice.getMessage());
+        assertEquals(fromBob.getIndex() + 1, fromAlice.getIndex());
+
+        ListUsersS2C usersOnB = (ListUsersS2C) bob.request(new ListUsersC2S(bobSession, -1, null, 0));
+        assertEquals(List.of("alice", "bob"), names(usersOnB));
+
+        bob.close();
+        TestClient resumed = connect(portA);
+        Message response = resumed.request(new ResumeC2S(bobSession, fromAlice.getIndex()));
+        assertEquals(bobSession, assertInstanceOf(LoginResposeS2C.class, response).getSession());
+        alice.receive(UserLoginEventS2C.class, e -> e.getName().equals("bob"));
+
+        ListUsersS2C usersOnA = (ListUsersS2C) resumed.request(new ListUsersC2S(bobSession, usersOnB.getVersion(), null, 0));
+        assertFalse(usersOnA.isDelta());
+        assertEquals(List.of("alice", "bob"), names(usersOnA));
+
+        assertInstanceOf(MessageResponseS2C.class, resumed.request(new ChatMessageC2S("back", bobSession)));
+        assertEquals("back", alice.receive(EventMessageS2C.class, e -> e.getFromName().equals("bob")).getMessage());
+    }
+
+    @Test
+    void testRestartedNodeCatchesUp() throws Exception {
+        int portA = freePort();
+        int clusterA = freePort();
+        int clusterB = freePort();
+        int firstPortB = freePort();
+        startNode("a", portA, clusterA, "b@127.0.0.1:" + clusterB);
+        Server first = startNode("b", "b", firstPortB, clusterB, "a@127.0.0.1:" + clusterA);
+
+        TestClient bob = connect(firstPortB);
+        bob.login("bob");
+        TestClient alice = connect(portA);
+        String aliceSession = alice.login("alice");
+        assertInstanceOf(MessageResponseS2C.class, alice.request(new ChatMessageC2S("before", aliceSession)));
+        bob.receive(EventMessageS2C.class, e -> e.getMessage().equals("before"));
+
+        // Node b comes back with an empty data directory, so everything it knows has to come from node a
+        first.drain();
+        int portB = freePort();
+        startNode("b", "b-restarted", portB, clusterB, "a@127.0.0.1:" + clusterA);
+        TestClient carol = connect(portB);
+        String carolSession = carol.login("carol");
+
+        assertEquals("before", carol.receive(EventMessageS2C.class, e -> e.getFromName().equals("alice")).getMessage());
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!names((ListUsersS2C) carol.request(new ListUsersC2S(carolSession, -1, null, 0))).contains("alice")) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Restarted node never learned that alice is online");
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+    }
+
+    @Test
+    void testPresenceVersionFromAnotherNodeIsNotADelta() {
+        PresenceIndex first = new PresenceIndex(16);
+        PresenceIndex second = new PresenceIndex(16);
+        first.setOnline("alice", "test");
+        second.setOnline("bob", "test");
+        second.setOnline("carol", "test");
+        assertNull(second.changesSince(first.getVersion()));
+        assertNull(first.changesSince(second.getVersion()));
+        assertEquals(List.of(new UserInfo("carol", "test")), second.changesSince(second.getVersion() - 1).joined());
+    }
+
+    private Server startNode(String id, int port, int clusterPort, String peer) throws Exception {
+        return startNode(id, id, port, clusterPort, peer);
+    }
+
+    private Server startNode(String id, String dataDir, int port, int clusterPort, String peer) throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.savePath = dir.resolve(dataDir).resolve("chat.bin");
+        config.savePath.getParent().toFile().mkdirs();
+        config.port = port;
+        config.loggingEnabled = false;
+        config.snapshotInterval = 0;
+        config.passwordIterations = 1000;
+        config.drainTimeoutSeconds = 0;
+        config.drainJitterMillis = 0;
+        config.clusterNode = id;
+        config.clusterPort = clusterPort;
+        config.clusterPeers.add(peer);
+        config.clusterSecret = "cluster-test-secret";
+        Server server = new Server(config);
+        servers.add(server);
+        Thread.ofPlatform().daemon().start(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        return server;
+    }
+
+    private TestClient connect(int port) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                TestClient client = new TestClient(new Socket("127.0.0.1", port));
+                clients.add(client);
+                return client;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+        }
+    }
+
+    private static List<String> names(ListUsersS2C users) {
+        return users.getUsers().stream().map(UserInfo::name).toList();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static final class TestClient {
+        private final Serializer serializer = new BinarySerializer();
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private long nextRequestId = 1;
+
+        TestClient(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(socket.getInputStream());
+            this.out = new DataOutputStream(socket.getOutputStream());
+            socket.setSoTimeout((int) TIMEOUT_MILLIS);
+        }
+
+        String login(String name) throws IOException {
+            Message response = request(new ConnectC2S(name, "test", "secret"));
+            return assertInstanceOf(LoginResposeS2C.class, response).getSession();
+        }
+
+        Message request(Message message) throws IOException {
+            long requestId = nextRequestId++;
+            message.setRequestId(requestId);
+            send(message);
+            return receive(Message.class, m -> m.getRequestId() == requestId);
+        }
+
+        void send(Message message) throws IOException {
+            byte[] payload = serializer.serialize(message);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.flush();
+        }
+
+        <T extends Message> T receive(Class<T> type, Predicate<T> filter) throws IOException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (System.currentTimeMillis() < deadline) {
+                byte[] payload;
+                try {
+                    payload = new byte[in.readInt()];
+                    in.readFully(payload);
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+                Message message = serializer.deserialize(payload);
+                if (type.isInstance(message) && filter.test(type.cast(message))) {
+                    return type.cast(message);
+                }
+            }
+            return fail("Timed out waiting for " + type.getSimpleName());
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package labs.network.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MessageHistoryTest {
+    @Test
+    void testReadBeforeWrap() {
+        MessageHistory history = filled(8, 5);
+        assertEquals(List.of(0, 1, 2, 3, 4), indices(history.readFrom(0)));
+        assertEquals(List.of(3, 4), indices(history.readFrom(3)));
+        assertEquals(List.of(), indices(history.readFrom(5)));
+        assertEquals(0, history.readFrom(0).missed());
+    }
+
+    @Test
+    void testReadAfterOverwrite() {
+        MessageHistory history = filled(8, 20);
+        MessageHistory.Slice slice = history.readFrom(0);
+        assertEquals(List.of(12, 13, 14, 15, 16, 17, 18, 19), indices(slice));
+        assertEquals(0, slice.missed());
+        assertEquals(List.of(15, 16, 17, 18, 19), indices(history.readFrom(15)));
+    }
+
+    @Test
+    void testSequencerGapIsNotMissed() {
+        MessageHistory history = new MessageHistory(8);
+        history.add(new ChatMessage("alice", "a", 0));
+        history.add(new ChatMessage("alice", "b", 1));
+        history.add(new ChatMessage("alice", "d", 3));
+        MessageHistory.Slice slice = history.readFrom(0);
+        assertEquals(List.of(0, 1, 3), indices(slice));
+        assertEquals(0, slice.missed());
+
+        MessageHistory wrapped = filled(4, 6);
+        wrapped.add(new ChatMessage("alice", "h", 7));
+        slice = wrapped.readFrom(0);
+        assertEquals(List.of(4, 5, 7), indices(slice));
+        assertEquals(0, slice.missed());
+    }
+
+    @Test
+    void testConcurrentOverwriteIsCounted() throws InterruptedException {
+        int capacity = 16;
+        MessageHistory history = filled(capacity, capacity);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = Thread.ofPlatform().start(() -> {
+            int index = capacity;
+            while (running.get()) {
+                history.add(new ChatMessage("alice", "m", index++));
+            }
+        });
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                MessageHistory.Slice slice = history.readFrom(0);
+                List<Integer> indices = indices(slice);
+                for (int j = 1; j < indices.size(); j++) {
+                    assertTrue(indices.get(j) > indices.get(j - 1), "Out of order: " + indices);
+                }
+                assertEquals(capacity, indices.size() + slice.missed(), "Lost messages in " + indices);
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    private static MessageHistory filled(int capacity, int count) {
+        MessageHistory history = new MessageHistory(capacity);
+        for (int i = 0; i < count; i++) {
+            history.add(new ChatMessage("alice", "m" + i, i));
+        }
+        return history;
+    }
+
+    private static List<Integer> indices(MessageHistory.Slice slice) {
+        return slice.messages().stream().map(ChatMessage::index).toList();
+    }
+}
@@ -4,3 +4,4 @@ include("protocol")
 include("server")
 include("client")
 include("load_tester")
+include("benchmark")